@@ -0,0 +1,63 @@
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading the customer register from a generated "Paying customers.txt" file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CustomerFileBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int customers;
+
+    private final RegisterPerson registerPerson = new RegisterPerson();
+    private Path directory;
+    private String customerFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("customer-file-benchmark");
+        Path file = directory.resolve("Paying customers.txt");
+        CustomerFileGenerator generator = new CustomerFileGenerator(42);
+        generator.write(file, generator.generate(customers));
+        customerFile = file.toString();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(Path.of(customerFile));
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public ArrayList<Person> createCustomerListFromFile() {
+        return registerPerson.createCustomerListFromFile(customerFile);
+    }
+
+    @Benchmark
+    public ArrayList<Person> createCustomerListFromFileInParallel() {
+        return registerPerson.createCustomerListFromFileInParallel(customerFile);
+    }
+}
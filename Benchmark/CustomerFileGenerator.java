@@ -0,0 +1,89 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+
+/**
+ * Generates realistic customer registers for the benchmarks: Swedish style SSNs built from a birth date,
+ * common Swedish names with a few duplicates, and membership payments spread over the last two years.
+ */
+public class CustomerFileGenerator {
+
+    private static final String[] FIRST_NAMES = {"Anna", "Eva", "Maria", "Karin", "Sara", "Kristina", "Lena",
+            "Emma", "Kerstin", "Ingrid", "Erik", "Lars", "Karl", "Anders", "Johan", "Per", "Nils", "Carl",
+            "Mikael", "Jan", "\u00c5sa", "Bj\u00f6rn", "G\u00f6ran", "S\u00f6lve", "Malin", "Daniel", "Sarah",
+            "Henrik"};
+    private static final String[] LAST_NAMES = {"Andersson", "Johansson", "Karlsson", "Nilsson", "Eriksson",
+            "Larsson", "Olsson", "Persson", "Svensson", "Gustafsson", "Pettersson", "Jonsson", "Jansson",
+            "Hansson", "Bengtsson", "J\u00f6nsson", "Lindberg", "Jakobsson", "Magnusson", "Lindstr\u00f6m", "Isaksson",
+            "Wrengler", "\u00c5berg", "S\u00f6derberg"};
+
+    private final Random random;
+
+    public CustomerFileGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Generates customers with unique SSNs. Names are drawn from a small pool, so larger registers
+     * contain many customers sharing a name, with a numbered suffix keeping most names unique.
+     *
+     * @param count The number of customers to generate.
+     * @return The generated customers.
+     */
+    public ArrayList<Person> generate(int count) {
+        ArrayList<Person> customers = new ArrayList<>(count);
+        HashSet<Long> usedSocialSecurityNumbers = new HashSet<>();
+        LocalDate today = LocalDate.now();
+
+        while (customers.size() < count) {
+            LocalDate birthDate = LocalDate.of(1940 + random.nextInt(65), 1 + random.nextInt(12),
+                    1 + random.nextInt(28));
+            long ssn = (birthDate.getYear() % 100) * 100_000_000L + birthDate.getMonthValue() * 1_000_000L
+                    + birthDate.getDayOfMonth() * 10_000L + random.nextInt(10_000);
+            if (!usedSocialSecurityNumbers.add(ssn)) {
+                continue;
+            }
+            String name = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " "
+                    + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+            if (random.nextInt(10) != 0) {
+                name = name + " " + customers.size();
+            }
+            customers.add(new Person(SocialSecurityNumberIndex.unpack(ssn), name,
+                    today.minusDays(random.nextInt(730))));
+        }
+        return customers;
+    }
+
+    /**
+     * Writes customers in the two-line format read by RegisterPerson.createCustomerListFromFile.
+     *
+     * @param path The file to write.
+     * @param customers The customers to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public void write(Path path, ArrayList<Person> customers) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            for (int i = 0; i < customers.size(); i++) {
+                Person p = customers.get(i);
+                writer.write(p.getSocialSecurityNumber() + ", " + p.getName() + "\n" + p.getMemberShipPaidDate());
+                if (i < customers.size() - 1) {
+                    writer.write("\n");
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a customer file from the command line: CustomerFileGenerator &lt;file&gt; &lt;count&gt; [seed].
+     */
+    public static void main(String[] args) throws IOException {
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+        CustomerFileGenerator generator = new CustomerFileGenerator(seed);
+        generator.write(Path.of(args[0]), generator.generate(Integer.parseInt(args[1])));
+    }
+}
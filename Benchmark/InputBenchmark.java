@@ -0,0 +1,63 @@
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Date parsing and formatting, input validation and the paying check. Only valid inputs are used, since
+ * invalid ones make validateInput print to the console. Run with -prof gc to see the allocation rate of
+ * each path: validation, the digit check and the paying check should report close to 0 B/op.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InputBenchmark {
+
+    private final RegisterPerson registerPerson = new RegisterPerson();
+    private final LocalDate date = LocalDate.of(2023, 6, 16);
+    private final String dateString = "2023-06-16";
+    private final String name = "Daniel Isaksson";
+    private final String socialSecurityNumber = "9006161234";
+    private final Person person = new Person(socialSecurityNumber, name, LocalDate.now().minusMonths(6));
+
+    @Benchmark
+    public LocalDate parseDateFromString() {
+        return registerPerson.parseDateFromString(dateString);
+    }
+
+    @Benchmark
+    public String formatDateToString() {
+        return registerPerson.formatDateToString(date);
+    }
+
+    @Benchmark
+    public String validateName() {
+        return registerPerson.validateInput(name);
+    }
+
+    @Benchmark
+    public String validateSocialSecurityNumber() {
+        return registerPerson.validateInput(socialSecurityNumber);
+    }
+
+    @Benchmark
+    public boolean checkIfInputIsOnlyNumbers() {
+        return registerPerson.checkIfInputIsOnlyNumbers(socialSecurityNumber);
+    }
+
+    @Benchmark
+    public boolean checkIfPersonIsPayingCustomer() {
+        return registerPerson.checkIfPersonIsPayingCustomer(person);
+    }
+}
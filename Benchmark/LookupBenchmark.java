@@ -0,0 +1,91 @@
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Customer lookup by name and SSN, for hits and misses, with the linear scan in checkIfPersonIsCustomer
+ * and with CustomerIndex.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LookupBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int customers;
+
+    private final RegisterPerson registerPerson = new RegisterPerson();
+    private ArrayList<Person> customerList;
+    private CustomerIndex customerIndex;
+    private String hitName;
+    private String hitSocialSecurityNumber;
+    private String missName;
+    private String missSocialSecurityNumber;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        customerList = new CustomerFileGenerator(42).generate(customers);
+        customerIndex = new CustomerIndex(customerList);
+
+        Person middle = customerList.get(customerList.size() / 2);
+        hitName = middle.getName().toUpperCase();
+        hitSocialSecurityNumber = middle.getSocialSecurityNumber();
+        missName = "Guest Visitor";
+        missSocialSecurityNumber = "0000000001";
+    }
+
+    @Benchmark
+    public boolean linearNameHit() {
+        return registerPerson.checkIfPersonIsCustomer(hitName, customerList);
+    }
+
+    @Benchmark
+    public boolean linearNameMiss() {
+        return registerPerson.checkIfPersonIsCustomer(missName, customerList);
+    }
+
+    @Benchmark
+    public boolean linearSocialSecurityNumberHit() {
+        return registerPerson.checkIfPersonIsCustomer(hitSocialSecurityNumber, customerList);
+    }
+
+    @Benchmark
+    public boolean linearSocialSecurityNumberMiss() {
+        return registerPerson.checkIfPersonIsCustomer(missSocialSecurityNumber, customerList);
+    }
+
+    @Benchmark
+    public boolean indexedNameHit() {
+        return registerPerson.checkIfPersonIsCustomer(hitName, customerIndex);
+    }
+
+    @Benchmark
+    public boolean indexedNameMiss() {
+        return registerPerson.checkIfPersonIsCustomer(missName, customerIndex);
+    }
+
+    @Benchmark
+    public boolean indexedSocialSecurityNumberHit() {
+        return registerPerson.checkIfPersonIsCustomer(hitSocialSecurityNumber, customerIndex);
+    }
+
+    @Benchmark
+    public boolean indexedSocialSecurityNumberMiss() {
+        return registerPerson.checkIfPersonIsCustomer(missSocialSecurityNumber, customerIndex);
+    }
+}
@@ -0,0 +1,74 @@
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appending workout entries: reopening the file per entry as addWorkoutInFileForPayingCustomers does,
+ * against the WorkoutSheetWriter that keeps it open.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorkoutSheetBenchmark {
+
+    private final RegisterPerson registerPerson = new RegisterPerson();
+    private final Person person = new Person("9006161234", "Daniel Isaksson", LocalDate.now());
+    private Path directory;
+    private Path workoutSheet;
+    private WorkoutSheetWriter perRecordWriter;
+    private WorkoutSheetWriter groupCommitWriter;
+
+    @Setup(Level.Iteration)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("workout-sheet-benchmark");
+        workoutSheet = directory.resolve("Workout sheet.txt");
+        perRecordWriter = new WorkoutSheetWriter(directory.resolve("Per record.txt"));
+        groupCommitWriter = new WorkoutSheetWriter(directory.resolve("Group commit.txt"),
+                WorkoutSheetWriter.Durability.GROUP_COMMIT, 256, 1000);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        perRecordWriter.close();
+        groupCommitWriter.close();
+        try (var files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public void addWorkoutInFileForPayingCustomers() {
+        registerPerson.addWorkoutInFileForPayingCustomers(workoutSheet.toString(), person);
+    }
+
+    @Benchmark
+    public void workoutSheetWriterPerRecord() throws IOException {
+        perRecordWriter.append(person);
+    }
+
+    @Benchmark
+    public void workoutSheetWriterGroupCommit() throws IOException {
+        groupCommitWriter.append(person);
+    }
+}
@@ -0,0 +1,69 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+class CheckInMetricsTest {
+
+    @Test
+    void histogramPercentilesTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 1000);
+        }
+
+        Assertions.assertEquals(100_000, histogram.getCount());
+        Assertions.assertEquals(100_000_000, histogram.getMax());
+        Assertions.assertEquals(50_000_500, histogram.getMean(), 1);
+        Assertions.assertEquals(50_000_000, histogram.getValueAtPercentile(50), 50_000_000 * 0.04);
+        Assertions.assertEquals(99_000_000, histogram.getValueAtPercentile(99), 99_000_000 * 0.04);
+        Assertions.assertEquals(100_000_000, histogram.getValueAtPercentile(100));
+        Assertions.assertEquals(0, new LatencyHistogram().getValueAtPercentile(99));
+    }
+
+    @Test
+    void histogramBucketsTest() {
+        for (long value : new long[]{0, 1, 31, 32, 33, 63, 64, 65, 1000, 123_456_789, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            Assertions.assertTrue(LatencyHistogram.highestValueOf(bucket) >= value);
+            Assertions.assertTrue(bucket == 0 || LatencyHistogram.highestValueOf(bucket - 1) < value);
+        }
+    }
+
+    @Test
+    void validationCountersTest() {
+        CheckInMetrics metrics = CheckInMetrics.global();
+        long empty = metrics.emptyInputs.sum();
+        long invalid = metrics.invalidNumbers.sum();
+        RegisterPerson rp = new RegisterPerson();
+
+        rp.classifyInput("");
+        rp.classifyInput("12345");
+        rp.classifyInput("7703021234");
+
+        Assertions.assertEquals(empty + 1, metrics.emptyInputs.sum());
+        Assertions.assertEquals(invalid + 1, metrics.invalidNumbers.sum());
+        Assertions.assertTrue(metrics.report().contains("invalid inputs"));
+    }
+
+    @Test
+    void workoutStagesTest() throws IOException {
+        CheckInMetrics metrics = CheckInMetrics.global();
+        Path sheet = Files.createTempDirectory("metrics").resolve("Workout sheet.txt");
+        Person person = new Person("9006161234", "Daniel Isaksson", LocalDate.now());
+        long appended = metrics.workoutAppend.getCount();
+        long queued = metrics.workoutQueue.getCount();
+
+        try (WorkoutLog log = new WorkoutLog(new WorkoutSheetWriter(sheet))) {
+            log.append(person).join();
+        }
+        Assertions.assertEquals(queued + 1, metrics.workoutQueue.getCount());
+
+        new RegisterPerson().addWorkoutInFileForPayingCustomers(sheet.toString(), person);
+        Assertions.assertEquals(appended + 1, metrics.workoutAppend.getCount());
+        Assertions.assertTrue(metrics.report().contains("workout queue"));
+    }
+}
@@ -0,0 +1,306 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+class CheckInServiceTest {
+
+    private static final RegisterPerson rp = new RegisterPerson();
+    private static final Person paying = new Person("9006161234", "Daniel Isaksson", LocalDate.now().minusMonths(1));
+    private static final Person notPaying = new Person("9403021234", "Sarah Wrengler", LocalDate.now().minusYears(2));
+    private static final CustomerIndex index = new CustomerIndex(Arrays.asList(paying, notPaying));
+
+    @Test
+    void batchCheckInTest() throws IOException {
+        Path directory = Files.createTempDirectory("batch");
+        Path input = directory.resolve("Badge reader.txt");
+        Path sheet = directory.resolve("Workout sheet.txt");
+        ArrayList<String> lines = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            lines.add(i % 2 == 0 ? "9006161234" : "Daniel Isaksson");
+        }
+        lines.addAll(List.of("9403021234", "Nobody", "", "123", "Daniel Isaksson"));
+        Files.write(input, lines);
+
+        BatchCheckIn.Summary summary;
+        try (WorkoutSheetWriter writer = new WorkoutSheetWriter(sheet, WorkoutSheetWriter.Durability.GROUP_COMMIT,
+                4096, 0)) {
+            summary = new BatchCheckIn(index, 4).run(input, writer, LocalDate.of(2023, 10, 19));
+        }
+
+        Assertions.assertEquals(10_005, summary.getLines());
+        Assertions.assertEquals(10_001, summary.getPayingCustomers());
+        Assertions.assertEquals(1, summary.getUnpaidCustomers());
+        Assertions.assertEquals(1, summary.getNotCustomers());
+        Assertions.assertEquals(1, summary.getEmptyInputs());
+        Assertions.assertEquals(1, summary.getInvalidNumbers());
+        List<String> written = Files.readAllLines(sheet);
+        Assertions.assertEquals(1 + 2 * 10_001, written.size());
+        Assertions.assertEquals("9006161234, Daniel Isaksson", written.get(written.size() - 2));
+        Assertions.assertEquals("2023-10-19", written.get(written.size() - 1));
+    }
+
+    @Test
+    void checkInTest() throws IOException {
+        Path sheet = Files.createTempDirectory("checkin").resolve("Workout sheet.txt");
+
+        try (CheckInService service = new CheckInService(index, new WorkoutLog(new WorkoutSheetWriter(sheet)))) {
+            CheckInResult result = service.checkIn("daniel isaksson");
+            Assertions.assertEquals(CheckInResult.Status.PAYING, result.getStatus());
+            Assertions.assertSame(paying, result.getPerson());
+            Assertions.assertEquals(rp.printIfPersonIsCustomer("daniel isaksson", true, true), result.getMessage());
+
+            Assertions.assertEquals(CheckInResult.Status.NOT_PAYING, service.checkIn("9403021234").getStatus());
+            Assertions.assertEquals(CheckInResult.Status.NOT_A_CUSTOMER, service.checkIn("Nobody").getStatus());
+            Assertions.assertEquals(CheckInResult.Status.INVALID_INPUT, service.checkIn("123").getStatus());
+            Assertions.assertEquals(CheckInResult.Status.INVALID_INPUT, service.checkIn(" ").getStatus());
+        }
+
+        Assertions.assertEquals(3, Files.readAllLines(sheet).size());
+    }
+
+    @Test
+    void concurrentCheckInTest() throws IOException {
+        Path sheet = Files.createTempDirectory("checkin").resolve("Workout sheet.txt");
+        List<CompletableFuture<CheckInResult>> results = new ArrayList<>();
+
+        try (CheckInService service = new CheckInService(index, new WorkoutLog(new WorkoutSheetWriter(sheet)))) {
+            for (int i = 0; i < 1000; i++) {
+                results.add(service.submit(i % 2 == 0 ? "9006161234" : "Sarah Wrengler"));
+            }
+            for (CompletableFuture<CheckInResult> result : results) {
+                Assertions.assertTrue(result.join().isCustomer());
+            }
+        }
+
+        Assertions.assertEquals(1 + 500 * 2, Files.readAllLines(sheet).size());
+    }
+
+    @Test
+    void workoutLogCloseTest() throws IOException, InterruptedException {
+        Path sheet = Files.createTempDirectory("checkin").resolve("Workout sheet.txt");
+        List<CompletableFuture<Void>> written = Collections.synchronizedList(new ArrayList<>());
+        WorkoutLog log = new WorkoutLog(new WorkoutSheetWriter(sheet, WorkoutSheetWriter.Durability.GROUP_COMMIT,
+                4096, 0));
+
+        log.append(paying).join();
+        Assertions.assertEquals(1, Files.readAllLines(sheet).size());
+
+        Thread[] appenders = new Thread[4];
+        for (int i = 0; i < appenders.length; i++) {
+            appenders[i] = new Thread(() -> {
+                for (int j = 0; j < 2000; j++) {
+                    written.add(log.append(paying));
+                }
+            });
+            appenders[i].start();
+        }
+        log.close();
+        for (Thread appender : appenders) {
+            appender.join();
+        }
+
+        long appended = written.stream().filter(future -> !future.isCompletedExceptionally()).count();
+        Assertions.assertTrue(written.stream().allMatch(CompletableFuture::isDone));
+        Assertions.assertEquals(1 + 2 * (1 + appended), Files.readAllLines(sheet).size());
+    }
+
+    @Test
+    void checkInServerTest() throws IOException, InterruptedException {
+        Path sheet = Files.createTempDirectory("checkin").resolve("Workout sheet.txt");
+
+        try (CheckInService service = new CheckInService(index, new WorkoutLog(new WorkoutSheetWriter(sheet)))) {
+            CheckInServer server = new CheckInServer(service, 0);
+            server.start();
+            try {
+                URI baseUri = URI.create("http://localhost:" + server.getPort());
+                List<String> inputs = Arrays.asList("Daniel Isaksson", "9403021234", "Nobody", "123");
+                String report = new LoadGenerator(baseUri, inputs).run(200, 4);
+                Assertions.assertTrue(report.startsWith("200 requests, 4 clients, 0 failed"), report);
+
+                report = new LoadGenerator(baseUri, CheckInServer.CHECK_IN_PATH, inputs).run(200, 4);
+                Assertions.assertTrue(report.startsWith("200 requests, 4 clients, 0 failed"), report);
+
+                report = new LoadGenerator(baseUri, inputs).run(0, 4);
+                Assertions.assertTrue(report.startsWith("0 requests, 4 clients, 0 failed"), report);
+            } finally {
+                server.stop();
+            }
+        }
+
+        Assertions.assertEquals(1 + 50 * 2, Files.readAllLines(sheet).size());
+    }
+
+    @Test
+    void shardedRegisterTest() throws IOException {
+        Path directory = Files.createTempDirectory("shards");
+        Path customers = directory.resolve("Paying customers.txt");
+        Path sheet = directory.resolve("Workout sheet.txt");
+        ArrayList<String> lines = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            lines.add("90061612" + String.format("%02d", i) + ", Member " + i);
+            lines.add((i == 7 ? LocalDate.now().minusYears(2) : LocalDate.now().minusMonths(1)).toString());
+        }
+        Files.write(customers, lines);
+
+        try (ShardedRegister register = new ShardedRegister(customers, sheet, 3)) {
+            for (int i = 0; i < 20; i++) {
+                CheckInResult result = register.checkIn(i % 2 == 0 ? "90061612" + String.format("%02d", i)
+                        : "member " + i);
+                Assertions.assertEquals(i == 7 ? CheckInResult.Status.NOT_PAYING : CheckInResult.Status.PAYING,
+                        result.getStatus());
+            }
+            Assertions.assertEquals(CheckInResult.Status.NOT_A_CUSTOMER, register.checkIn("Nobody").getStatus());
+            Assertions.assertEquals(CheckInResult.Status.NOT_A_CUSTOMER, register.checkIn("9006161299").getStatus());
+            Assertions.assertEquals(CheckInResult.Status.INVALID_INPUT, register.checkIn("123").getStatus());
+            Assertions.assertTrue(rp.checkIfPersonIsCustomer("Member 3", register));
+            Assertions.assertFalse(rp.checkIfPersonIsCustomer("Member 30", register));
+        }
+
+        int workouts = 0;
+        for (int shard = 0; shard < 3; shard++) {
+            List<String> written = Files.readAllLines(ShardedRegister.shardPath(sheet, shard));
+            for (int line = 1; line < written.size(); line += 2) {
+                Assertions.assertEquals(shard, ShardedRegister.shardOf(written.get(line).split(",")[0], 3));
+                workouts++;
+            }
+        }
+        Assertions.assertEquals(19, workouts);
+    }
+
+    @Test
+    void unavailableShardTest() throws IOException {
+        Path directory = Files.createTempDirectory("shards");
+        Path customers = directory.resolve("Paying customers.txt");
+        Path sheet = directory.resolve("Workout sheet.txt");
+        ArrayList<String> lines = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            lines.add("90061612" + String.format("%02d", i) + ", Member " + i);
+            lines.add(LocalDate.now().minusMonths(1).toString());
+        }
+        Files.write(customers, lines);
+
+        try (ShardedRegister register = new ShardedRegister(customers, sheet, 3)) {
+            String stoppedSheet = ShardedRegister.shardPath(sheet, 2).toString();
+            List<ProcessHandle> stopped = ProcessHandle.current().children()
+                    .filter(worker -> worker.info().arguments()
+                            .map(arguments -> Arrays.asList(arguments).contains(stoppedSheet)).orElse(false))
+                    .toList();
+            Assertions.assertEquals(1, stopped.size());
+            stopped.get(0).destroyForcibly();
+            stopped.get(0).onExit().join();
+
+            for (int i = 0; i < 20; i++) {
+                String socialSecurityNumber = "90061612" + String.format("%02d", i);
+                String name = "Member " + i;
+                if (ShardedRegister.shardOf(socialSecurityNumber, 3) == 2) {
+                    IOException failure = Assertions.assertThrows(IOException.class,
+                            () -> register.checkIn(socialSecurityNumber));
+                    Assertions.assertTrue(failure.getMessage().startsWith("Shard 2 at"), failure.getMessage());
+                    Assertions.assertThrows(IOException.class, () -> register.checkIn(name));
+                } else {
+                    Assertions.assertEquals(CheckInResult.Status.PAYING,
+                            register.checkIn(socialSecurityNumber).getStatus());
+                    Assertions.assertEquals(CheckInResult.Status.PAYING, register.checkIn(name).getStatus());
+                }
+            }
+        }
+    }
+
+    @Test
+    void silentShardTest() throws IOException {
+        // The console program waits for input and never says it listens.
+        Process worker = new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"), Main.class.getName()).redirectErrorStream(true).start();
+        IOException failure = Assertions.assertThrows(IOException.class,
+                () -> ShardedRegister.awaitListening(worker, 0, System.nanoTime() + 500_000_000L));
+        Assertions.assertEquals("Shard 0 did not start listening in time", failure.getMessage());
+        Assertions.assertFalse(worker.onExit().join().isAlive());
+    }
+
+    @Test
+    void consoleCheckInTest() throws IOException {
+        Path sheet = Files.createTempDirectory("console").resolve("Workout sheet.txt");
+        ByteArrayInputStream input = new ByteArrayInputStream(
+                "Daniel Isaksson\n9403021234\n123\nDaniel Isakson\n9006161234\nquit\nSarah Wrengler\n"
+                        .getBytes(StandardCharsets.UTF_8));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        try (CheckInService service = new CheckInService(index, new WorkoutLog(new WorkoutSheetWriter(sheet)))) {
+            new ConsoleCheckIn(service, input, new PrintStream(output, true, StandardCharsets.UTF_8)).run();
+        }
+
+        List<String> answers = output.toString(StandardCharsets.UTF_8).lines()
+                .filter(line -> !RegisterPerson.PROMPT.contains(line))
+                .toList();
+        Assertions.assertEquals(List.of(
+                rp.printIfPersonIsCustomer("Daniel Isaksson", true, true),
+                rp.printIfPersonIsCustomer("9403021234", true, false),
+                "The SSN you have entered is not the correct length. 10 numbers are required",
+                rp.printIfPersonIsCustomer("Daniel Isakson", false, false),
+                "Did you mean:",
+                "  Daniel Isaksson (9006161234)",
+                rp.printIfPersonIsCustomer("9006161234", true, true)), answers);
+        Assertions.assertEquals(1 + 2 * 2, Files.readAllLines(sheet).size());
+    }
+
+    @Test
+    void checkInCacheTest() {
+        CheckInCache cache = new CheckInCache(8);
+        long today = index.getTodayEpochDay();
+        for (int i = 0; i < 8; i++) {
+            for (int visit = 0; visit < 3; visit++) {
+                cache.get("Regular " + i, index, today);
+            }
+            cache.put("Regular " + i, index, today, 0, paying, true);
+        }
+        cache.get("Guest", index, today);
+        cache.put("Guest", index, today, 1, notPaying, false);
+
+        // A one-time visitor does not push out a regular.
+        Assertions.assertNull(cache.get("Guest", index, today));
+        for (int i = 0; i < 8; i++) {
+            Assertions.assertSame(paying, cache.get("Regular " + i, index, today).getPerson());
+        }
+
+        // Entries of another register or another day never hit.
+        Assertions.assertNull(cache.get("Regular 0", new CustomerIndex(Arrays.asList(paying, notPaying)), today));
+        Assertions.assertNull(cache.get("Regular 0", index, today + 1));
+    }
+
+    @Test
+    void cachedCheckInTest() throws IOException {
+        Path sheet = Files.createTempDirectory("checkin").resolve("Workout sheet.txt");
+        CheckInMetrics metrics = CheckInMetrics.global();
+
+        try (CheckInService service = new CheckInService(index, new WorkoutLog(new WorkoutSheetWriter(sheet)),
+                CheckInService.newCheckInExecutor(), new CheckInCache(64))) {
+            long hits = metrics.cacheHits.sum();
+            for (int i = 0; i < 10; i++) {
+                Assertions.assertEquals(CheckInResult.Status.PAYING, service.checkIn("9006161234").getStatus());
+                Assertions.assertEquals(CheckInResult.Status.NOT_PAYING, service.checkIn("Sarah Wrengler").getStatus());
+            }
+            Assertions.assertTrue(metrics.cacheHits.sum() - hits >= 18);
+
+            service.setCustomerIndex(new CustomerIndex(Arrays.asList(notPaying)));
+            Assertions.assertEquals(CheckInResult.Status.NOT_A_CUSTOMER, service.checkIn("9006161234").getStatus());
+        }
+
+        Assertions.assertEquals(1 + 10 * 2, Files.readAllLines(sheet).size());
+        Assertions.assertTrue(metrics.report().contains("check-in cache"));
+    }
+}
@@ -0,0 +1,145 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+class CustomerFileWatcherTest {
+
+    private static final RegisterPerson rp = new RegisterPerson();
+
+    @Test
+    void appendedCustomersTest() throws IOException {
+        Path file = Files.createTempDirectory("watcher").resolve("Paying customers.txt");
+        Files.writeString(file, "9006161234, Daniel Isaksson\n2023-06-16");
+        ArrayList<Person> customers = rp.createCustomerListFromFile(file.toString());
+        AtomicReference<CustomerIndex> published = new AtomicReference<>();
+
+        try (CustomerFileWatcher watcher = new CustomerFileWatcher(file, new CustomerIndex(customers),
+                CustomerFileState.read(file), published::set)) {
+            Assertions.assertFalse(watcher.reload());
+
+            Files.writeString(file, "\n9403021234, Sarah Wrengler\n2024-01-0", StandardOpenOption.APPEND);
+            Assertions.assertFalse(watcher.reload());
+            Assertions.assertNull(published.get());
+
+            Files.writeString(file, "2", StandardOpenOption.APPEND);
+            Assertions.assertTrue(watcher.reload());
+            Assertions.assertEquals(2, published.get().size());
+            Assertions.assertEquals(LocalDate.of(2024, 1, 2),
+                    published.get().findCustomer("Sarah Wrengler").getMemberShipPaidDate());
+            Assertions.assertSame(published.get(), watcher.getCustomerIndex());
+        }
+    }
+
+    @Test
+    void malformedAppendTest() throws IOException {
+        Path file = Files.createTempDirectory("watcher").resolve("Paying customers.txt");
+        Files.writeString(file, "9006161234, Daniel Isaksson\n2023-06-16");
+        ArrayList<Person> customers = rp.createCustomerListFromFile(file.toString());
+        AtomicReference<CustomerIndex> published = new AtomicReference<>();
+
+        try (CustomerFileWatcher watcher = new CustomerFileWatcher(file, new CustomerIndex(customers),
+                CustomerFileState.read(file), published::set)) {
+            Files.writeString(file, "\n9403021234 Sarah Wrengler\n2024-01-02\n8001011234, Adam Berg\n2024-13-01"
+                    + "\n7703021234, Eva Lind\n2024-02-03", StandardOpenOption.APPEND);
+            Assertions.assertTrue(watcher.reload());
+            Assertions.assertEquals(2, published.get().size());
+            Assertions.assertNotNull(published.get().findCustomer("Eva Lind"));
+            Assertions.assertNull(published.get().findCustomer("Adam Berg"));
+
+            Files.writeString(file, "\n6605051234, Olle Ek\n2024-03-04", StandardOpenOption.APPEND);
+            Assertions.assertTrue(watcher.reload());
+            Assertions.assertEquals(3, published.get().size());
+        }
+    }
+
+    @Test
+    void changedCustomersTest() throws IOException {
+        Path file = Files.createTempDirectory("watcher").resolve("Paying customers.txt");
+        Files.writeString(file, "9006161234, Daniel Isaksson\n2023-06-16\n9403021234, Sarah Wrengler\n2022-12-02");
+        ArrayList<Person> customers = rp.createCustomerListFromFile(file.toString());
+        AtomicReference<CustomerIndex> published = new AtomicReference<>();
+
+        try (CustomerFileWatcher watcher = new CustomerFileWatcher(file, new CustomerIndex(customers),
+                CustomerFileState.read(file), published::set)) {
+            Files.writeString(file, "9403021234, Sarah Wrengler\n2024-12-02");
+            Assertions.assertTrue(watcher.reload());
+            Assertions.assertEquals(1, published.get().size());
+            Assertions.assertNull(published.get().findCustomer("Daniel Isaksson"));
+
+            CustomerIndex reloaded = published.get();
+            Files.writeString(file, "9006161234, Daniel Isaksson\n2023-06-16\n9403021234, Sarah Wrengler\n2024-1");
+            Assertions.assertFalse(watcher.reload());
+            Assertions.assertSame(reloaded, watcher.getCustomerIndex());
+
+            Files.writeString(file, "2-02", StandardOpenOption.APPEND);
+            Assertions.assertTrue(watcher.reload());
+            Assertions.assertEquals(2, published.get().size());
+            Assertions.assertEquals(LocalDate.of(2024, 12, 2),
+                    published.get().findCustomer("9403021234").getMemberShipPaidDate());
+        }
+    }
+
+    @Test
+    void appendedBeforeWatchingTest() throws IOException {
+        Path file = Files.createTempDirectory("watcher").resolve("Paying customers.txt");
+        Files.writeString(file, "9006161234, Daniel Isaksson\n2023-06-16");
+        CustomerFileState loadedFile = CustomerFileState.read(file);
+        ArrayList<Person> customers = rp.createCustomerListFromFile(file.toString());
+        Files.writeString(file, "\n9403021234, Sarah Wrengler\n2024-01-02", StandardOpenOption.APPEND);
+        AtomicReference<CustomerIndex> published = new AtomicReference<>();
+
+        try (CustomerFileWatcher watcher = new CustomerFileWatcher(file, new CustomerIndex(customers), loadedFile,
+                published::set)) {
+            Assertions.assertEquals(2, published.get().size());
+            Assertions.assertSame(customers.get(0), published.get().get(0));
+            Assertions.assertFalse(watcher.reload());
+        }
+    }
+
+    @Test
+    void renewedInPlaceTest() throws IOException {
+        Path file = Files.createTempDirectory("watcher").resolve("Paying customers.txt");
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            content.append(1_000_000_000L + i).append(", Customer ").append(i).append("\n2022-01-01\n");
+        }
+        Files.writeString(file, content);
+        ArrayList<Person> customers = rp.createCustomerListFromFile(file.toString());
+        AtomicReference<CustomerIndex> published = new AtomicReference<>();
+
+        try (CustomerFileWatcher watcher = new CustomerFileWatcher(file, new CustomerIndex(customers),
+                CustomerFileState.read(file), published::set)) {
+            int first = content.indexOf("1000000003, Customer 3\n") + "1000000003, Customer 3\n".length();
+            int last = content.indexOf("1000004321, Customer 4321\n") + "1000004321, Customer 4321\n".length();
+            content.replace(first, first + 10, "2024-03-01");
+            content.replace(last, last + 10, "2024-04-01");
+            Files.writeString(file, content);
+            Assertions.assertTrue(watcher.reload());
+
+            CustomerIndex renewed = published.get();
+            Assertions.assertEquals(5000, renewed.size());
+            Assertions.assertEquals(LocalDate.of(2024, 3, 1), renewed.findCustomer("Customer 3").getMemberShipPaidDate());
+            Assertions.assertEquals(LocalDate.of(2024, 4, 1),
+                    renewed.findCustomer("1000004321").getMemberShipPaidDate());
+            Assertions.assertSame(customers.get(4320), renewed.get(4320));
+            Assertions.assertEquals(LocalDate.of(2024, 4, 1), renewed.copyCustomers().get(4321).getMemberShipPaidDate());
+
+            int renamed = content.indexOf("Customer 10\n");
+            content.replace(renamed, renamed + 11, "Kund     10");
+            Files.writeString(file, content);
+            Assertions.assertTrue(watcher.reload());
+            Assertions.assertEquals(5000, published.get().size());
+            Assertions.assertNotNull(published.get().findCustomer("Kund     10"));
+            Assertions.assertNotSame(customers.get(0), published.get().get(0));
+            Assertions.assertEquals(LocalDate.of(2024, 3, 1),
+                    published.get().findCustomer("Customer 3").getMemberShipPaidDate());
+        }
+    }
+}
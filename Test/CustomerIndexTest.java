@@ -0,0 +1,262 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+class CustomerIndexTest {
+
+    private static final Person p1 = new Person("9006161234", "Daniel Isaksson",
+            LocalDate.of(2023, 6, 16));
+    private static final Person p2 = new Person("9403021234", "Sarah Wrengler",
+            LocalDate.of(2022, 12, 2));
+    private static final Person p3 = new Person("7608081234", "Daniel Isaksson",
+            LocalDate.of(2021, 2, 2));
+    private static final ArrayList<Person> testList = new ArrayList<>(Arrays.asList(p1, p2, p3));
+    private static final CustomerIndex index = new CustomerIndex(testList);
+
+    @Test
+    void findCustomerTest() {
+        Assertions.assertSame(p2, index.findCustomer("Sarah Wrengler"));
+        Assertions.assertSame(p2, index.findCustomer("sarah wrengler"));
+        Assertions.assertSame(p3, index.findCustomer("7608081234"));
+        Assertions.assertNull(index.findCustomer("Henrik Isaksson"));
+        Assertions.assertNull(index.findCustomer("9203021234"));
+    }
+
+    @Test
+    void duplicateNameTest() {
+        Assertions.assertSame(p1, index.findCustomer("Daniel Isaksson"));
+        Assertions.assertTrue(index.hasDuplicateName("daniel isaksson"));
+        Assertions.assertFalse(index.hasDuplicateName("Sarah Wrengler"));
+        Assertions.assertEquals(Arrays.asList(p1, p3), index.findAllByName("Daniel Isaksson"));
+    }
+
+    @Test
+    void matchesLinearScanTest() {
+        RegisterPerson rp = new RegisterPerson();
+        for (String input : new String[]{"Daniel Isaksson", "9006161234", "SARAH WRENGLER", "Nobody", "0000000000"}) {
+            Assertions.assertEquals(rp.checkIfPersonIsCustomer(input, testList),
+                    rp.checkIfPersonIsCustomer(input, index));
+        }
+    }
+
+    @Test
+    void socialSecurityNumberIndexTest() {
+        long packed = SocialSecurityNumberIndex.pack("0123456789");
+        Assertions.assertEquals(123456789L, packed);
+        Assertions.assertEquals("0123456789", SocialSecurityNumberIndex.unpack(packed));
+        Assertions.assertEquals(SocialSecurityNumberIndex.NOT_A_SOCIAL_SECURITY_NUMBER,
+                SocialSecurityNumberIndex.pack("012345678a"));
+        Assertions.assertEquals(SocialSecurityNumberIndex.NOT_A_SOCIAL_SECURITY_NUMBER,
+                SocialSecurityNumberIndex.pack("123"));
+
+        Assertions.assertEquals(LocalDate.of(2022, 12, 2).toEpochDay(), index.findPaidEpochDay("9403021234"));
+        Assertions.assertEquals(Integer.MIN_VALUE, index.findPaidEpochDay("9203021234"));
+    }
+
+    @Test
+    void membershipTimelineTest() {
+        Person leapDay = new Person("0002291234", "Leap Day", LocalDate.of(2024, 2, 29));
+        ArrayList<Person> customers = new ArrayList<>(Arrays.asList(p1, p2, p3, leapDay));
+        long day = LocalDate.of(2023, 12, 1).toEpochDay();
+        MembershipTimeline timeline = new MembershipTimeline(customers, day);
+
+        Assertions.assertEquals(LocalDate.of(2025, 3, 1).toEpochDay(),
+                MembershipTimeline.expiryDay(leapDay.getMemberShipPaidDate()));
+        Assertions.assertEquals(Arrays.asList(p2, p1),
+                timeline.findExpiringBetween(LocalDate.of(2023, 12, 1), LocalDate.of(2024, 6, 30)));
+
+        for (long today = day; today < LocalDate.of(2025, 6, 1).toEpochDay(); today++) {
+            LocalDate cutoff = LocalDate.ofEpochDay(today).minusYears(1);
+            for (int i = 0; i < customers.size(); i++) {
+                Assertions.assertEquals(customers.get(i).getMemberShipPaidDate().isAfter(cutoff),
+                        timeline.isPaying(i, today));
+            }
+        }
+        Assertions.assertTrue(timeline.isPaying(0, day));
+    }
+
+    @Test
+    void membershipTimelineStaleDayTest() {
+        ArrayList<Person> customers = new ArrayList<>(Arrays.asList(p1, p2, p3));
+        long expiry = MembershipTimeline.expiryDay(p2.getMemberShipPaidDate());
+        MembershipTimeline timeline = new MembershipTimeline(customers, expiry - 1);
+        Assertions.assertTrue(timeline.isPaying(1, expiry - 1));
+        Assertions.assertFalse(timeline.isPaying(1, expiry));
+
+        // A caller that still has yesterday's date is answered for yesterday, without moving today back.
+        for (int lookup = 0; lookup < 10; lookup++) {
+            Assertions.assertTrue(timeline.isPaying(1, expiry - 1));
+            Assertions.assertFalse(timeline.isPaying(1, expiry));
+        }
+
+        // A clock that really went back keeps asking for the earlier day.
+        for (int lookup = 0; lookup < 2000; lookup++) {
+            Assertions.assertTrue(timeline.isPaying(1, expiry - 1));
+        }
+        Assertions.assertFalse(timeline.isPaying(1, expiry));
+        Assertions.assertTrue(timeline.isPaying(1, expiry - 1));
+    }
+
+    @Test
+    void appendedCustomersTest() {
+        ArrayList<Person> customers = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            customers.add(new Person(String.format("80010%05d", i), "Member " + i % 30,
+                    LocalDate.now().minusDays(i * 20L)));
+        }
+        ArrayList<Person> all = new ArrayList<>(customers);
+        CustomerIndex appended = new CustomerIndex(customers);
+        CustomerIndex compactAppended = new CustomerIndex(CompactCustomerList.copyOf(customers));
+
+        for (int round = 0; round < 8; round++) {
+            ArrayList<Person> added = new ArrayList<>(Arrays.asList(
+                    new Person(String.format("90010%05d", round), "Member " + round, LocalDate.now().minusDays(round)),
+                    new Person(String.format("80010%05d", round), "Newcomer " + round, LocalDate.now())));
+            all.addAll(added);
+            appended = appended.withAppended(added);
+            compactAppended = compactAppended.withAppended(added);
+            CustomerIndex rebuilt = new CustomerIndex(all);
+
+            for (CustomerIndex index : new CustomerIndex[]{appended, compactAppended}) {
+                Assertions.assertEquals(all.size(), index.size());
+                Assertions.assertEquals(all.size(), index.getCustomers().size());
+                Assertions.assertEquals(all.size(), index.copyCustomers().size());
+                for (String input : new String[]{"Member " + round, "newcomer " + round, "9001000000",
+                        String.format("80010%05d", round), "Nobody", "8001099999"}) {
+                    Assertions.assertEquals(rebuilt.findPosition(input), index.findPosition(input), input);
+                    Assertions.assertEquals(rebuilt.findAllByName(input).size(), index.findAllByName(input).size());
+                    Assertions.assertEquals(rebuilt.hasDuplicateName(input), index.hasDuplicateName(input));
+                    Assertions.assertEquals(rebuilt.findPaidEpochDay(input), index.findPaidEpochDay(input));
+                }
+                for (int i = 0; i < all.size(); i++) {
+                    Assertions.assertEquals(rebuilt.isPayingCustomer(i), index.isPayingCustomer(i));
+                    Assertions.assertEquals(all.get(i).getSocialSecurityNumber(),
+                            index.get(i).getSocialSecurityNumber());
+                }
+                Assertions.assertEquals(
+                        rebuilt.findExpiringBetween(LocalDate.now(), LocalDate.now().plusYears(1)).stream()
+                                .map(Person::getSocialSecurityNumber).toList(),
+                        index.findExpiringBetween(LocalDate.now(), LocalDate.now().plusYears(1)).stream()
+                                .map(Person::getSocialSecurityNumber).toList());
+            }
+        }
+        Assertions.assertTrue(compactAppended.isCompact());
+        Assertions.assertSame(appended, appended.withAppended(new ArrayList<>()));
+    }
+
+    @Test
+    void appendedOneByOneTest() {
+        ArrayList<Person> customers = new ArrayList<>();
+        for (int i = 0; i < 800; i++) {
+            customers.add(new Person(String.format("80010%05d", i), "Member " + i, LocalDate.now().minusDays(i)));
+        }
+        CustomerIndex index = new CustomerIndex(customers);
+        ArrayList<CustomerIndex> versions = new ArrayList<>();
+        for (int i = 0; i < 90; i++) {
+            versions.add(index);
+            index = index.withAppended(List.of(new Person(String.format("90010%05d", i), "Newcomer " + i % 60,
+                    LocalDate.now().minusDays(i * 5L))));
+        }
+        CustomerIndex fork = versions.get(40).withAppended(List.of(
+                new Person("9001000041", "Someone Else", LocalDate.now())));
+
+        for (int version = 0; version < versions.size(); version++) {
+            CustomerIndex old = versions.get(version);
+            Assertions.assertEquals(800 + version, old.size());
+            Assertions.assertEquals(version > 0 ? 800 : -1, old.findPosition("9001000000"));
+            Assertions.assertEquals(-1, old.findPosition(String.format("90010%05d", version)));
+        }
+        CustomerIndex rebuilt = new CustomerIndex(index.copyCustomers());
+        for (int i = 0; i < 90; i++) {
+            Assertions.assertEquals(800 + i, index.findPosition(String.format("90010%05d", i)));
+            Assertions.assertEquals(rebuilt.isPayingCustomer(800 + i), index.isPayingCustomer(800 + i));
+        }
+        Assertions.assertEquals(800 + 5, index.findPosition("newcomer 5"));
+        Assertions.assertEquals(2, index.findAllByName("Newcomer 5").size());
+        Assertions.assertTrue(index.hasDuplicateName("Newcomer 5"));
+        Assertions.assertEquals(890, index.getCustomers().size());
+        Assertions.assertEquals(841, fork.size());
+        Assertions.assertEquals(840, fork.findPosition("Someone Else"));
+        Assertions.assertEquals(840, fork.findPosition("9001000041"));
+        Assertions.assertEquals(841, index.findPosition("9001000041"));
+        Assertions.assertEquals(-1, index.findPosition("Someone Else"));
+    }
+
+    @Test
+    void nameSearchTest() {
+        Person asa = new Person("8001011234", "\u00c5sa S\u00f6derberg", LocalDate.of(2023, 1, 1));
+        Person anders = new Person("8102021234", "Anders Andersson", LocalDate.of(2023, 1, 1));
+        NameSearchIndex search = new NameSearchIndex(Arrays.asList(p1, p2, p3, asa, anders));
+
+        Assertions.assertEquals("asa soderberg", NameSearchIndex.normalize("  \u00c5SA   S\u00f6derberg "));
+        Assertions.assertEquals(Arrays.asList(asa), search.findByPrefix("asa sod", 10));
+        Assertions.assertEquals(Arrays.asList(p1, p3), search.findByPrefix("dan", 10));
+        Assertions.assertEquals(Arrays.asList(p1, p3), search.findByPrefix("isak", 10));
+        Assertions.assertEquals(Arrays.asList(anders), search.findByPrefix("and", 10));
+        Assertions.assertEquals(Arrays.asList(anders, asa), search.findByPrefix("a", 10));
+        Assertions.assertEquals(Arrays.asList(asa), search.findSimilar("Asa Soderbreg", 2, 10));
+        Assertions.assertEquals(Arrays.asList(p2), search.findSimilar("Sara Wrengler", 1, 10));
+        Assertions.assertTrue(search.findSimilar("Sara Wrengler", 0, 10).isEmpty());
+        Assertions.assertEquals(Arrays.asList(p2), search.suggest("Sarah Wrengle", 5));
+        Assertions.assertEquals(1, NameSearchIndex.editDistance("isaksson", "isakson", 2));
+        Assertions.assertEquals(3, NameSearchIndex.editDistance("abc", "xyz", 2));
+    }
+
+    @Test
+    void compactCustomerListTest() {
+        CompactCustomerList compact = CompactCustomerList.copyOf(testList);
+        compact.add("12345", "Sarah Wrengler", LocalDate.of(2024, 1, 2).toEpochDay());
+
+        Assertions.assertEquals(4, compact.size());
+        Assertions.assertEquals(2, compact.getNameCount());
+        Assertions.assertSame(compact.getName(1), compact.getName(3));
+        Assertions.assertEquals("9006161234", compact.get(0).getSocialSecurityNumber());
+        Assertions.assertEquals("12345", compact.getSocialSecurityNumber(3));
+        Assertions.assertEquals(LocalDate.of(2021, 2, 2), compact.get(2).getMemberShipPaidDate());
+
+        CustomerIndex compactIndex = new CustomerIndex(compact);
+        Assertions.assertEquals(2, compactIndex.findPosition("7608081234"));
+        Assertions.assertEquals(3, compactIndex.findPosition("12345"));
+        Assertions.assertEquals(0, compactIndex.findPosition("daniel isaksson"));
+        Assertions.assertEquals("Sarah Wrengler", compactIndex.findCustomer("12345").getName());
+        Assertions.assertInstanceOf(CompactCustomerList.class, compactIndex.copyCustomers());
+        Assertions.assertTrue(compactIndex.isCompact());
+        List<Person> suggestions = compactIndex.getNameSearchIndex().suggest("Sarah Wrengler", 5);
+        Assertions.assertEquals(2, suggestions.size());
+        Assertions.assertEquals("12345", suggestions.get(1).getSocialSecurityNumber());
+        CustomerIndex personIndex = new CustomerIndex(new ArrayList<>(compact));
+        for (int i = 0; i < compact.size(); i++) {
+            Assertions.assertEquals(personIndex.isPayingCustomer(i), compactIndex.isPayingCustomer(i));
+        }
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> compact.get(4));
+    }
+
+    @Test
+    void customerFilterTest() {
+        ArrayList<Person> customers = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            customers.add(new Person(String.valueOf(8_000_000_000L + i), "Member " + i, LocalDate.of(2023, 6, 16)));
+        }
+        customers.add(new Person("12345", "Short Number", LocalDate.of(2023, 6, 16)));
+        CustomerIndex filtered = new CustomerIndex(customers, MembershipCutoff.systemDefault(), 0.01);
+        CheckInMetrics metrics = CheckInMetrics.global();
+        long rejected = metrics.filterRejected.sum();
+
+        for (int i = 0; i < 10_000; i++) {
+            Assertions.assertEquals(i, filtered.findPosition(String.valueOf(8_000_000_000L + i)));
+            Assertions.assertEquals(i, filtered.findPosition("MEMBER " + i));
+        }
+        Assertions.assertEquals(10_000, filtered.findPosition("12345"));
+        for (int i = 0; i < 10_000; i++) {
+            Assertions.assertEquals(-1, filtered.findPosition(String.valueOf(9_000_000_000L + i)));
+            Assertions.assertEquals(-1, filtered.findPosition("Guest " + i));
+        }
+
+        Assertions.assertTrue(metrics.filterRejected.sum() - rejected > 19_000);
+        Assertions.assertTrue(metrics.report().contains("customer filter"));
+    }
+}
@@ -0,0 +1,184 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+class LogStoreTest {
+
+    private static final RegisterPerson rp = new RegisterPerson();
+
+    @Test
+    void putGetDeleteTest() throws IOException {
+        Path directory = Files.createTempDirectory("store");
+
+        try (LogStore store = new LogStore(directory, 64, 3, false)) {
+            for (int i = 0; i < 100; i++) {
+                store.put(String.format("key%03d", i), "value" + i);
+            }
+            store.put("key050", "changed");
+            store.delete("key051");
+
+            Assertions.assertTrue(store.getSegmentCount() > 0);
+            Assertions.assertTrue(store.getSegmentCount() <= 3);
+            Assertions.assertEquals("value0", store.get("key000"));
+            Assertions.assertEquals("value99", store.get("key099"));
+            Assertions.assertEquals("changed", store.get("key050"));
+            Assertions.assertNull(store.get("key051"));
+            Assertions.assertNull(store.get("key100"));
+            Assertions.assertEquals(List.of("key049", "key050", "key052"),
+                    new ArrayList<>(store.scan("key049", "key053").keySet()));
+
+            store.compact();
+            Assertions.assertEquals(1, store.getSegmentCount());
+            Assertions.assertNull(store.get("key051"));
+            Assertions.assertEquals(99, store.scanPrefix("key").size());
+        }
+    }
+
+    @Test
+    void recoveryTest() throws IOException {
+        Path directory = Files.createTempDirectory("store");
+
+        try (LogStore store = new LogStore(directory, 1 << 20, 8, false)) {
+            store.put("a", "1");
+            store.put("b", "2");
+            store.flush();
+            store.put("b", "3");
+            store.delete("a");
+            store.put("c", "4");
+        }
+
+        // A write that was cut off in the middle is discarded, the writes before it are kept.
+        Files.write(directory.resolve("wal.log"), new byte[]{0, 0, 0, 42, 0, 0}, StandardOpenOption.APPEND);
+
+        try (LogStore store = new LogStore(directory, 1 << 20, 8, false)) {
+            Assertions.assertNull(store.get("a"));
+            Assertions.assertEquals("3", store.get("b"));
+            Assertions.assertEquals("4", store.get("c"));
+            Assertions.assertEquals(5, store.getSequence());
+
+            store.put("d", "5");
+            Assertions.assertEquals(6, store.getSequence());
+        }
+        try (LogStore store = new LogStore(directory, 1 << 20, 8, false)) {
+            Assertions.assertEquals("5", store.get("d"));
+        }
+    }
+
+    @Test
+    void boundedScanTest() throws IOException {
+        Path directory = Files.createTempDirectory("store");
+
+        try (LogStore store = new LogStore(directory, 64, 8, false)) {
+            for (int i = 0; i < 50; i++) {
+                store.put(String.format("key%03d", i), "value" + i);
+            }
+            for (int i = 0; i < 40; i++) {
+                store.delete(String.format("key%03d", i));
+            }
+
+            Assertions.assertTrue(store.getSegmentCount() > 1);
+            Assertions.assertEquals(List.of("key040", "key041", "key042"),
+                    new ArrayList<>(store.scan("key", "kez", 3).keySet()));
+            Assertions.assertEquals(10, store.scan("key", "kez", 100).size());
+            Assertions.assertTrue(store.scan("key000", "key040", 1).isEmpty());
+        }
+    }
+
+    @Test
+    void gymStoreCustomerOrderTest() throws IOException {
+        Path directory = Files.createTempDirectory("store");
+        Path customers = directory.resolve("Paying customers.txt");
+        Files.writeString(customers, "9403021234, Sarah Wrengler\n2022-12-02\n9006161234, Daniel Isaksson\n2023-06-16"
+                + "\n9403021234, Sarah Wrengler\n2023-12-02\n9912311234, Eva Lind\n2024-02-03");
+
+        try (GymStore store = new GymStore(directory.resolve("store"))) {
+            Assertions.assertEquals(4, store.importCustomers(customers));
+            store.putCustomer(new Person("8001011234", "Adam Berg", LocalDate.of(2023, 1, 1)));
+            store.putCustomer(new Person("9403021234", "Sarah Wrengler", LocalDate.of(2024, 1, 2)));
+        }
+
+        try (GymStore store = new GymStore(directory.resolve("store"))) {
+            ArrayList<Person> register = store.getCustomers();
+            Assertions.assertEquals(List.of("9403021234", "9006161234", "9912311234", "8001011234"),
+                    register.stream().map(Person::getSocialSecurityNumber).toList());
+            Assertions.assertEquals(LocalDate.of(2024, 1, 2), register.get(0).getMemberShipPaidDate());
+        }
+
+        try (GymStore store = new GymStore(Files.createTempDirectory("store"))) {
+            store.importCustomers(customers);
+            Assertions.assertEquals(LocalDate.of(2022, 12, 2), store.getCustomer("9403021234").getMemberShipPaidDate());
+        }
+    }
+
+    @Test
+    void gymStoreFlushTest() throws IOException {
+        Path directory = Files.createTempDirectory("store");
+        Person daniel = new Person("9006161234", "Daniel Isaksson", LocalDate.of(2023, 6, 16));
+
+        try (GymStore store = new GymStore(new LogStore(directory, 1 << 20, 8, false))) {
+            for (int i = 0; i < 500; i++) {
+                store.append(daniel, LocalDate.of(2023, 10, 18));
+                store.flush();
+            }
+            Assertions.assertEquals(0, store.getLogStore().getSegmentCount());
+        }
+
+        try (GymStore store = new GymStore(new LogStore(directory, 1024, 8, false))) {
+            Assertions.assertEquals(500, store.getWorkouts().size());
+            for (int i = 0; i < 500; i++) {
+                store.append(daniel, LocalDate.of(2023, 10, 19));
+                store.flush();
+            }
+            Assertions.assertTrue(store.getLogStore().getSegmentCount() <= 8);
+            Assertions.assertEquals(1000, store.getWorkouts().size());
+        }
+    }
+
+    @Test
+    void gymStoreImportExportTest() throws IOException {
+        Path directory = Files.createTempDirectory("store");
+        Path customers = directory.resolve("Paying customers.txt");
+        Path workoutSheet = directory.resolve("Workout sheet.txt");
+        Files.writeString(customers, "9006161234, Daniel Isaksson\n2023-06-16\n9403021234, Sarah Wrengler\n2022-12-02");
+        Files.writeString(workoutSheet, "Workout sheet:\n9006161234, Daniel Isaksson\n2023-10-18a"
+                + "\n9006161234, Daniel Isaksson\n2023-10-19");
+
+        try (GymStore store = new GymStore(directory.resolve("store"))) {
+            Assertions.assertTrue(store.isEmpty());
+            Assertions.assertEquals(2, store.importCustomers(customers));
+            Assertions.assertEquals(2, store.importWorkouts(workoutSheet));
+
+            Person sarah = store.getCustomer("9403021234");
+            Assertions.assertEquals("Sarah Wrengler", sarah.getName());
+            sarah.setMemberShipPaidDate(LocalDate.of(2024, 1, 2));
+            store.putCustomer(sarah);
+            store.append(sarah, LocalDate.of(2024, 1, 3));
+
+            Assertions.assertEquals(1, store.getWorkouts(LocalDate.of(2023, 10, 19), LocalDate.of(2024, 1, 2)).size());
+            Assertions.assertEquals(3, store.getWorkouts().size());
+        }
+
+        try (GymStore store = new GymStore(directory.resolve("store"))) {
+            Assertions.assertFalse(store.isEmpty());
+            Assertions.assertEquals(LocalDate.of(2024, 1, 2), store.getCustomer("9403021234").getMemberShipPaidDate());
+
+            store.exportCustomers(directory.resolve("Exported customers.txt"));
+            store.exportWorkouts(directory.resolve("Exported workouts.txt"));
+        }
+
+        ArrayList<Person> exported = rp.createCustomerListFromFile(directory.resolve("Exported customers.txt").toString());
+        Assertions.assertEquals(2, exported.size());
+        Assertions.assertEquals("Daniel Isaksson", exported.get(0).getName());
+        Assertions.assertEquals(LocalDate.of(2024, 1, 2), exported.get(1).getMemberShipPaidDate());
+        Assertions.assertEquals("Workout sheet:\n9006161234, Daniel Isaksson\n2023-10-18a"
+                        + "\n9006161234, Daniel Isaksson\n2023-10-19\n9403021234, Sarah Wrengler\n2024-01-03",
+                Files.readString(directory.resolve("Exported workouts.txt")));
+    }
+}
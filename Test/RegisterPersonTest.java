@@ -6,9 +6,12 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Clock;
 import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 class RegisterPersonTest {
 
@@ -69,6 +72,66 @@ class RegisterPersonTest {
         }
     }
 
+    @Test
+    void createCustomersFromFileInParallelTest(){
+        ArrayList<Person> expected = rp.createCustomerListFromFile(testCustomersFilePath);
+        ArrayList<Person> actual = rp.createCustomerListFromFileInParallel(testCustomersFilePath);
+
+        Assertions.assertEquals(expected.size(), actual.size());
+        for(int i = 0; i < expected.size(); i++) {
+            Assertions.assertEquals(expected.get(i).getName(), actual.get(i).getName());
+            Assertions.assertEquals(expected.get(i).getSocialSecurityNumber(), actual.get(i).getSocialSecurityNumber());
+            Assertions.assertEquals(expected.get(i).getMemberShipPaidDate(), actual.get(i).getMemberShipPaidDate());
+        }
+    }
+
+    @Test
+    void createCustomersFromFileInRegionsTest() throws IOException {
+        Path file = Files.createTempDirectory("loader").resolve("Paying customers.txt");
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            String lineBreak = i % 3 == 0 ? "\r\n" : "\n";
+            content.append(i == 0 ? "" : lineBreak).append(String.format("90061612%02d", i % 100)).append(", Member ")
+                    .append(i).append(lineBreak).append(LocalDate.of(2023, 1, 1).plusDays(i));
+        }
+        Files.writeString(file, content);
+        ArrayList<Person> expected = rp.createCustomerListFromFile(file.toString());
+
+        for (int regionSize : new int[]{64, 101, 1 << 20}) {
+            ArrayList<Person> actual = new CustomerFileLoader(ForkJoinPool.commonPool(),
+                    regionSize).load(file);
+            Assertions.assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                Assertions.assertEquals(expected.get(i).getName(), actual.get(i).getName());
+                Assertions.assertEquals(expected.get(i).getMemberShipPaidDate(), actual.get(i).getMemberShipPaidDate());
+            }
+        }
+        Assertions.assertThrows(IOException.class,
+                () -> new CustomerFileLoader(ForkJoinPool.commonPool(), 16).load(file));
+    }
+
+    @Test
+    void loadCustomersFromSnapshotTest() throws IOException {
+        Path snapshotPath = Paths.get("Test/Paying customers Test.snapshot");
+        CustomerSnapshot snapshot = new CustomerSnapshot(snapshotPath);
+        Files.deleteIfExists(snapshotPath);
+
+        ArrayList<Person> expected = rp.createCustomerListFromFile(testCustomersFilePath);
+        rp.loadCustomers(testCustomersFilePath, snapshotPath.toString());
+        ArrayList<Person> actual = snapshot.read(Paths.get(testCustomersFilePath));
+
+        Assertions.assertNotNull(actual);
+        Assertions.assertEquals(expected.size(), actual.size());
+        for(int i = 0; i < expected.size(); i++) {
+            Assertions.assertEquals(expected.get(i).getName(), actual.get(i).getName());
+            Assertions.assertEquals(expected.get(i).getSocialSecurityNumber(), actual.get(i).getSocialSecurityNumber());
+            Assertions.assertEquals(expected.get(i).getMemberShipPaidDate(), actual.get(i).getMemberShipPaidDate());
+        }
+
+        Assertions.assertNull(snapshot.read(Paths.get(testWorkoutFilePath)));
+        Files.delete(snapshotPath);
+    }
+
     @Test
     void checkIfPersonIsCustomerTest(){
         boolean expected = true;
@@ -119,6 +182,21 @@ class RegisterPersonTest {
     void checkIfInputIsOnlyNumbersTest(){
         Assertions.assertTrue(rp.checkIfInputIsOnlyNumbers("123"));
         Assertions.assertFalse(rp.checkIfInputIsOnlyNumbers("hej"));
+        Assertions.assertFalse(rp.checkIfInputIsOnlyNumbers(""));
+        Assertions.assertFalse(rp.checkIfInputIsOnlyNumbers("12 3"));
+        Assertions.assertFalse(rp.checkIfInputIsOnlyNumbers("\u0661\u0662"));
+    }
+
+    @Test
+    void membershipCutoffTest(){
+        LocalDate today = LocalDate.of(2024, 2, 29);
+        MembershipCutoff cutoff = new MembershipCutoff(Clock.fixed(
+                today.atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC));
+
+        Assertions.assertEquals(today, cutoff.getToday());
+        Assertions.assertEquals(today.minusYears(1), cutoff.getCutoffDate());
+        Assertions.assertTrue(cutoff.isPaying(LocalDate.of(2023, 3, 1)));
+        Assertions.assertFalse(cutoff.isPaying(LocalDate.of(2023, 2, 28)));
     }
 
     @Test
@@ -225,4 +303,23 @@ class RegisterPersonTest {
 
     }
 
+    @Test
+    void workoutSheetWriterMatchesFileFormatTest() throws IOException {
+        Path directory = Files.createTempDirectory("workout");
+        Path expectedPath = directory.resolve("expected.txt");
+        Path actualPath = directory.resolve("actual.txt");
+
+        rp.addWorkoutInFileForPayingCustomers(expectedPath.toString(), p1);
+        rp.addWorkoutInFileForPayingCustomers(expectedPath.toString(), p2);
+
+        try (WorkoutSheetWriter writer = new WorkoutSheetWriter(actualPath,
+                WorkoutSheetWriter.Durability.GROUP_COMMIT, 10, 0)) {
+            writer.append(p1);
+            writer.append(p2);
+            Assertions.assertEquals("Workout sheet:", Files.readString(actualPath));
+        }
+
+        Assertions.assertEquals(Files.readString(expectedPath), Files.readString(actualPath));
+    }
+
 }
\ No newline at end of file
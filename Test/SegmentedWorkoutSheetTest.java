@@ -0,0 +1,84 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+class SegmentedWorkoutSheetTest {
+
+    private static final Person DANIEL = new Person("9006161234", "Daniel Isaksson", LocalDate.of(2023, 6, 16));
+    private static final Person SARAH = new Person("9403021234", "Sarah Wrengler", LocalDate.of(2024, 1, 2));
+
+    @Test
+    void rollAndCompressTest() throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("segments");
+
+        try (SegmentedWorkoutSheet sheet = new SegmentedWorkoutSheet(directory, 80, 0,
+                WorkoutSheetWriter.Durability.FLUSH_PER_RECORD, 1, 0)) {
+            sheet.append(DANIEL, LocalDate.of(2023, 10, 18));
+            sheet.append(SARAH, LocalDate.of(2023, 10, 19));
+            sheet.append(DANIEL, LocalDate.of(2023, 10, 19));
+            sheet.append(SARAH, LocalDate.of(2023, 10, 19));
+            sheet.append(DANIEL, LocalDate.of(2023, 10, 20));
+            Assertions.assertTrue(sheet.awaitCompression(10_000));
+
+            Assertions.assertEquals(4, sheet.getSegmentCount());
+            Assertions.assertTrue(Files.exists(directory.resolve("workouts-2023-10-18-000.txt.gz")));
+            Assertions.assertTrue(Files.exists(directory.resolve("workouts-2023-10-19-001.txt.gz")));
+            Assertions.assertTrue(Files.exists(directory.resolve("workouts-2023-10-20-000.txt")));
+            Assertions.assertEquals("Workout sheet:\n9006161234, Daniel Isaksson\n2023-10-20",
+                    Files.readString(directory.resolve("workouts-2023-10-20-000.txt")));
+
+            List<String[]> october19 = sheet.read(LocalDate.of(2023, 10, 19), LocalDate.of(2023, 10, 19));
+            Assertions.assertEquals(3, october19.size());
+            Assertions.assertArrayEquals(new String[]{"9403021234", "Sarah Wrengler", "2023-10-19"}, october19.get(0));
+            Assertions.assertEquals(2, sheet.findSegments(LocalDate.of(2023, 10, 19), LocalDate.of(2023, 10, 19)).size());
+            Assertions.assertEquals(5, sheet.read(LocalDate.of(2023, 1, 1), LocalDate.of(2023, 12, 31)).size());
+        }
+
+        String manifest = Files.readString(directory.resolve("manifest.txt"));
+        Assertions.assertTrue(manifest.startsWith("workouts-2023-10-18-000.txt.gz, 2023-10-18, "));
+        Assertions.assertEquals(4, manifest.lines().count());
+    }
+
+    @Test
+    void reopenTest() throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("segments");
+        LocalDate today = LocalDate.now();
+
+        try (SegmentedWorkoutSheet sheet = new SegmentedWorkoutSheet(directory)) {
+            sheet.append(DANIEL, today.minusDays(1));
+            sheet.append(DANIEL, today);
+        }
+        try (SegmentedWorkoutSheet sheet = new SegmentedWorkoutSheet(directory, 1 << 20, 1,
+                WorkoutSheetWriter.Durability.FLUSH_PER_RECORD, 1, 0)) {
+            sheet.append(SARAH, today);
+            Assertions.assertTrue(sheet.awaitCompression(10_000));
+
+            // Today's segment is appended to again, and yesterday's is past the retention period.
+            Assertions.assertEquals(2, sheet.read(today, today).size());
+            Assertions.assertEquals(1, sheet.getSegmentCount());
+        }
+    }
+
+    @Test
+    void otherFilesTest() throws IOException {
+        Path directory = Files.createTempDirectory("segments");
+        String today = new RegisterPerson().formatDateToString(LocalDate.now());
+        Path notes = Files.writeString(directory.resolve("workouts-notes.txt"), "Not a segment");
+        Path unfinished = Files.writeString(directory.resolve("workouts-" + today + "-000.txt.gz.tmp"), "");
+        Files.writeString(directory.resolve("workouts-" + today + "-1000.txt"), "");
+
+        try (SegmentedWorkoutSheet sheet = new SegmentedWorkoutSheet(directory)) {
+            Assertions.assertEquals(1, sheet.getSegmentCount());
+            sheet.append(DANIEL, LocalDate.now());
+            Assertions.assertEquals(1, sheet.read(LocalDate.now(), LocalDate.now()).size());
+        }
+        Assertions.assertTrue(Files.exists(notes));
+        Assertions.assertFalse(Files.exists(unfinished));
+        Assertions.assertTrue(Files.size(directory.resolve("workouts-" + today + "-1000.txt")) > 0);
+    }
+}
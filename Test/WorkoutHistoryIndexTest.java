@@ -0,0 +1,79 @@
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+
+class WorkoutHistoryIndexTest {
+
+    private static final LocalDate OCTOBER_1 = LocalDate.of(2023, 10, 1);
+    private static final LocalDate OCTOBER_31 = LocalDate.of(2023, 10, 31);
+
+    @Test
+    void visitsAndAttendanceTest() throws IOException {
+        Path directory = Files.createTempDirectory("history");
+        Path sheet = directory.resolve("Workout sheet.txt");
+        Files.writeString(sheet, "Workout sheet:\n7703021234, Alhambra Aromes\n2023-10-18a"
+                + "\n7703021234, Alhambra Aromes\n2023-10-19\n9006161234, Daniel Isaksson\n2023-10-19"
+                + "\n7703021234, Alhambra Aromes\n2023-11-02");
+
+        try (WorkoutHistoryIndex history = new WorkoutHistoryIndex(sheet, directory.resolve("Workout sheet.index"))) {
+            Assertions.assertEquals(3, history.size());
+            Assertions.assertEquals(1, history.getSkippedEntries());
+            Assertions.assertEquals(1, history.countVisits("7703021234", OCTOBER_1, OCTOBER_31));
+            Assertions.assertEquals(List.of(LocalDate.of(2023, 10, 19), LocalDate.of(2023, 11, 2)),
+                    history.findVisits("7703021234", OCTOBER_1, LocalDate.of(2023, 12, 31)));
+            Assertions.assertEquals(0, history.countVisits("8204021234", OCTOBER_1, OCTOBER_31));
+            Assertions.assertEquals(2, history.countAttendance(LocalDate.of(2023, 10, 19)));
+            Assertions.assertEquals(1, history.findAttendance(OCTOBER_1, OCTOBER_31).size());
+        }
+    }
+
+    @Test
+    void incrementalRefreshTest() throws IOException {
+        Path directory = Files.createTempDirectory("history");
+        Path sheet = directory.resolve("Workout sheet.txt");
+        Path index = directory.resolve("Workout sheet.index");
+        Person daniel = new Person("9006161234", "Daniel Isaksson", LocalDate.of(2023, 6, 16));
+
+        try (WorkoutSheetWriter writer = new WorkoutSheetWriter(sheet);
+             WorkoutHistoryIndex history = new WorkoutHistoryIndex(sheet, index)) {
+            Assertions.assertEquals(0, history.size());
+
+            writer.append(daniel, LocalDate.of(2023, 10, 19));
+            Assertions.assertTrue(history.refresh());
+            Assertions.assertFalse(history.refresh());
+
+            // The date of an entry that is still being written is read on the next refresh.
+            Files.writeString(sheet, "\n9006161234, Daniel Isaksson\n2023-10-2", StandardOpenOption.APPEND);
+            Assertions.assertFalse(history.refresh());
+            Files.writeString(sheet, "0", StandardOpenOption.APPEND);
+            Assertions.assertTrue(history.refresh());
+            Assertions.assertEquals(2, history.countVisits("9006161234", OCTOBER_1, OCTOBER_31));
+        }
+
+        Files.writeString(sheet, "\n9006161234, Daniel Isaksson\n2023-10-21", StandardOpenOption.APPEND);
+        try (WorkoutHistoryIndex history = new WorkoutHistoryIndex(sheet, index)) {
+            Assertions.assertEquals(3, history.countVisits("9006161234", OCTOBER_1, OCTOBER_31));
+        }
+
+        Files.writeString(sheet, "Workout sheet:\n9006161234, Daniel Isaksson\n2023-10-22");
+        try (WorkoutHistoryIndex history = new WorkoutHistoryIndex(sheet, index)) {
+            Assertions.assertEquals(List.of(LocalDate.of(2023, 10, 22)),
+                    history.findVisits("9006161234", OCTOBER_1, OCTOBER_31));
+        }
+    }
+
+    @Test
+    void parseDayTest() {
+        Assertions.assertEquals(LocalDate.of(2023, 10, 18).toEpochDay(), WorkoutHistoryIndex.parseDay("2023-10-18"));
+        Assertions.assertEquals(LocalDate.of(2023, 2, 28).toEpochDay(), WorkoutHistoryIndex.parseDay("2023-02-30"));
+        Assertions.assertEquals(Integer.MIN_VALUE, WorkoutHistoryIndex.parseDay("2023-10-18a"));
+        Assertions.assertEquals(Integer.MIN_VALUE, WorkoutHistoryIndex.parseDay("2023-13-01"));
+        Assertions.assertEquals(Integer.MIN_VALUE, WorkoutHistoryIndex.parseDay("2023-10-32"));
+    }
+}
@@ -0,0 +1,366 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * The customers appended to a register since it was last indexed in full, with an index that grows with
+ * them, so appending costs time in proportion to the appended customers.
+ * <p>
+ * An instance is one version: the first count customers of a growing store. Appending fills the store past
+ * the count and gives a new version; earlier versions still see only their own customers and can be read
+ * while a later one is appended to. The store only grows. Customers are written before the version that
+ * shows them is published, and the hash chains are kept in file order and only ever linked at their end,
+ * so a reader that meets a customer added after its version stops there. When the store is full it is
+ * copied into one twice as large, which older versions never see.
+ * <p>
+ * Appends must come from one thread at a time, as they do from the CustomerFileWatcher.
+ */
+public class AppendedCustomers {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Store store;
+    private final int count;
+    private final boolean hasNumericNames;
+    private final Person[] customers;
+    private final long[] packedSocialSecurityNumbers;
+    private final int[] paidEpochDays;
+    private final int[] expiryDays;
+    private final String[] nameKeys;
+    private final int[] socialSecurityNumberHeads;
+    private final int[] socialSecurityNumberNext;
+    private final int[] nameHeads;
+    private final int[] nameNext;
+
+    /**
+     * Creates an empty version.
+     *
+     * @param expectedSize The most customers that will be appended, which sizes the Bloom filter.
+     * @param filterFalsePositiveRate The false-positive rate of the filter, between 0 and 1; 0 turns it off.
+     */
+    public AppendedCustomers(int expectedSize, double filterFalsePositiveRate) {
+        this(new Store(expectedSize, filterFalsePositiveRate), 0, false);
+    }
+
+    private AppendedCustomers(Store store, int count, boolean hasNumericNames) {
+        this.store = store;
+        this.count = count;
+        this.hasNumericNames = hasNumericNames;
+        this.customers = store.customers;
+        this.packedSocialSecurityNumbers = store.packedSocialSecurityNumbers;
+        this.paidEpochDays = store.paidEpochDays;
+        this.expiryDays = store.expiryDays;
+        this.nameKeys = store.nameKeys;
+        this.socialSecurityNumberHeads = store.socialSecurityNumberHeads;
+        this.socialSecurityNumberNext = store.socialSecurityNumberNext;
+        this.nameHeads = store.nameHeads;
+        this.nameNext = store.nameNext;
+    }
+
+    /**
+     * Gives a new version with customers added at the end. This version is not changed.
+     *
+     * @param added The customers to add, in file order.
+     * @return The new version.
+     */
+    public AppendedCustomers append(List<Person> added) {
+        synchronized (store) {
+            // Only the latest version can fill the store in place; an older one starts a store of its own.
+            Store target = store.size == count ? store : store.copy(count);
+            boolean numericNames = hasNumericNames;
+            for (Person p : added) {
+                numericNames |= SocialSecurityNumberIndex.pack(p.getName())
+                        != SocialSecurityNumberIndex.NOT_A_SOCIAL_SECURITY_NUMBER;
+                target.add(p);
+            }
+            return new AppendedCustomers(target, target.size, numericNames);
+        }
+    }
+
+    /**
+     * Checks the Bloom filter of the appended customers.
+     *
+     * @param key The name key of the input, or null if the input can only be a social security number.
+     * @return False if no appended customer has the input; true if one may have it.
+     */
+    public boolean mightBeCustomer(String nameOrSocialSecurityNumber, long packed, String key) {
+        BloomFilter filter = store.filter;
+        if (filter == null) {
+            return true;
+        }
+        if (packed != SocialSecurityNumberIndex.NOT_A_SOCIAL_SECURITY_NUMBER) {
+            return filter.mightContain(packed) || key != null && filter.mightContain(key);
+        }
+        return key != null && (filter.mightContain(key) || filter.mightContain(nameOrSocialSecurityNumber));
+    }
+
+    /**
+     * Finds the first appended customer matching a name key or social security number, like
+     * CustomerIndex.findPosition does for the indexed register.
+     *
+     * @param key The name key of the input, or null if the input can only be a social security number.
+     * @return The position among the appended customers, or -1 if there is no match.
+     */
+    public int findPosition(String nameOrSocialSecurityNumber, long packed, String key) {
+        int ssnPosition = findBySocialSecurityNumber(nameOrSocialSecurityNumber, packed);
+        if (key == null) {
+            return ssnPosition;
+        }
+        int namePosition = firstByName(key);
+        if (namePosition < 0 || ssnPosition < 0) {
+            return Math.max(namePosition, ssnPosition);
+        }
+        return Math.min(namePosition, ssnPosition);
+    }
+
+    /**
+     * @return The paid date of the first appended customer with a packed SSN, or Integer.MIN_VALUE.
+     */
+    public int findPaidEpochDay(long packed) {
+        int position = findBySocialSecurityNumber(null, packed);
+        return position < 0 ? Integer.MIN_VALUE : paidEpochDays[position];
+    }
+
+    public boolean isPaying(int position, long todayEpochDay) {
+        return expiryDays[checkIndex(position)] > todayEpochDay;
+    }
+
+    /**
+     * Gives the appended customers whose membership expires between two days. The appended customers are
+     * few, so they are scanned rather than kept sorted.
+     *
+     * @return The expiry day shifted 32 bits left, or'ed with the position, in file order.
+     */
+    public long[] findExpiringBetween(long firstDay, long lastDay) {
+        long[] expiring = new long[count];
+        int found = 0;
+        for (int i = 0; i < count; i++) {
+            if (expiryDays[i] >= firstDay && expiryDays[i] <= lastDay) {
+                expiring[found++] = (long) expiryDays[i] << 32 | i;
+            }
+        }
+        return Arrays.copyOf(expiring, found);
+    }
+
+    /**
+     * @return The positions of the appended customers with a name key, in file order.
+     */
+    public int[] findPositionsByName(String key) {
+        int[] matches = new int[countByName(key)];
+        int found = 0;
+        for (int i = nameHeads[bucket(key.hashCode(), nameHeads)] - 1; i >= 0 && i < count; i = nameNext[i] - 1) {
+            if (nameKeys[i].equals(key)) {
+                matches[found++] = i;
+            }
+        }
+        return matches;
+    }
+
+    public int countByName(String key) {
+        int matches = 0;
+        for (int i = nameHeads[bucket(key.hashCode(), nameHeads)] - 1; i >= 0 && i < count; i = nameNext[i] - 1) {
+            if (nameKeys[i].equals(key)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    public Person get(int position) {
+        return customers[checkIndex(position)];
+    }
+
+    /**
+     * @return The appended customers of this version as a read-only list.
+     */
+    public List<Person> asList() {
+        return new CustomerList(customers, count);
+    }
+
+    public boolean hasNumericNames() {
+        return hasNumericNames;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @param nameOrSocialSecurityNumber The input, needed only for an SSN that is not 10 digits.
+     */
+    private int findBySocialSecurityNumber(String nameOrSocialSecurityNumber, long packed) {
+        boolean isPacked = packed != SocialSecurityNumberIndex.NOT_A_SOCIAL_SECURITY_NUMBER;
+        if (!isPacked && nameOrSocialSecurityNumber == null) {
+            return -1;
+        }
+        int hash = isPacked ? Long.hashCode(BloomFilter.mix(packed)) : nameOrSocialSecurityNumber.hashCode();
+        for (int i = socialSecurityNumberHeads[bucket(hash, socialSecurityNumberHeads)] - 1; i >= 0 && i < count;
+                i = socialSecurityNumberNext[i] - 1) {
+            if (packedSocialSecurityNumbers[i] == packed && (isPacked
+                    || customers[i].getSocialSecurityNumber().equals(nameOrSocialSecurityNumber))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int firstByName(String key) {
+        for (int i = nameHeads[bucket(key.hashCode(), nameHeads)] - 1; i >= 0 && i < count; i = nameNext[i] - 1) {
+            if (nameKeys[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int checkIndex(int position) {
+        if (position < 0 || position >= count) {
+            throw new IndexOutOfBoundsException("Appended customer " + position + " out of " + count);
+        }
+        return position;
+    }
+
+    private static int bucket(int hash, int[] heads) {
+        return (hash ^ hash >>> 16) & (heads.length - 1);
+    }
+
+    /**
+     * The growing arrays shared by the versions. Chains link customers by position + 1, so 0 ends a chain,
+     * and new customers are linked at the end of their chain through the tails, which readers never use.
+     */
+    private static class Store {
+
+        private final BloomFilter filter;
+        private Person[] customers;
+        private long[] packedSocialSecurityNumbers;
+        private int[] paidEpochDays;
+        private int[] expiryDays;
+        private String[] nameKeys;
+        private int[] socialSecurityNumberHeads;
+        private int[] socialSecurityNumberTails;
+        private int[] socialSecurityNumberNext;
+        private int[] nameHeads;
+        private int[] nameTails;
+        private int[] nameNext;
+        private int size;
+
+        Store(int expectedSize, double filterFalsePositiveRate) {
+            this.filter = filterFalsePositiveRate > 0
+                    ? new BloomFilter(Math.max(expectedSize, 1) * 2, filterFalsePositiveRate) : null;
+            allocate(INITIAL_CAPACITY);
+        }
+
+        private Store(BloomFilter filter) {
+            this.filter = filter;
+        }
+
+        /**
+         * Copies the first customers into a store of their own, for an append to a version that is not the
+         * latest. The filter is shared, since it may let more through but never rejects a customer it has.
+         */
+        Store copy(int count) {
+            Store copy = new Store(filter);
+            copy.allocate(Math.max(Integer.highestOneBit(Math.max(count, 1)) * 2, INITIAL_CAPACITY));
+            for (int i = 0; i < count; i++) {
+                copy.place(customers[i]);
+            }
+            return copy;
+        }
+
+        void add(Person p) {
+            if (size == customers.length) {
+                grow();
+            }
+            place(p);
+            if (filter != null) {
+                long packed = packedSocialSecurityNumbers[size - 1];
+                if (packed != SocialSecurityNumberIndex.NOT_A_SOCIAL_SECURITY_NUMBER) {
+                    filter.add(packed);
+                } else {
+                    filter.add(p.getSocialSecurityNumber());
+                }
+                filter.add(nameKeys[size - 1]);
+            }
+        }
+
+        private void place(Person p) {
+            String key = CustomerIndex.nameKey(p.getName());
+            long packed = SocialSecurityNumberIndex.pack(p.getSocialSecurityNumber());
+            int position = size;
+            customers[position] = p;
+            packedSocialSecurityNumbers[position] = packed;
+            paidEpochDays[position] = Math.toIntExact(p.getMemberShipPaidDate().toEpochDay());
+            expiryDays[position] = Math.toIntExact(MembershipTimeline.expiryDay(p.getMemberShipPaidDate()));
+            nameKeys[position] = key;
+            int ssnHash = packed != SocialSecurityNumberIndex.NOT_A_SOCIAL_SECURITY_NUMBER
+                    ? Long.hashCode(BloomFilter.mix(packed)) : p.getSocialSecurityNumber().hashCode();
+            link(ssnHash, position, socialSecurityNumberHeads, socialSecurityNumberTails, socialSecurityNumberNext);
+            link(key.hashCode(), position, nameHeads, nameTails, nameNext);
+            size++;
+        }
+
+        private static void link(int hash, int position, int[] heads, int[] tails, int[] next) {
+            int bucket = bucket(hash, heads);
+            if (tails[bucket] == 0) {
+                heads[bucket] = position + 1;
+            } else {
+                next[tails[bucket] - 1] = position + 1;
+            }
+            tails[bucket] = position + 1;
+        }
+
+        /**
+         * Moves the customers into arrays twice as large and links them again. The old arrays are left as
+         * they are for the versions that read them.
+         */
+        private void grow() {
+            Person[] oldCustomers = customers;
+            int oldSize = size;
+            allocate(customers.length * 2);
+            size = 0;
+            for (int i = 0; i < oldSize; i++) {
+                place(oldCustomers[i]);
+            }
+        }
+
+        private void allocate(int capacity) {
+            customers = new Person[capacity];
+            packedSocialSecurityNumbers = new long[capacity];
+            paidEpochDays = new int[capacity];
+            expiryDays = new int[capacity];
+            nameKeys = new String[capacity];
+            socialSecurityNumberHeads = new int[capacity];
+            socialSecurityNumberTails = new int[capacity];
+            socialSecurityNumberNext = new int[capacity];
+            nameHeads = new int[capacity];
+            nameTails = new int[capacity];
+            nameNext = new int[capacity];
+        }
+    }
+
+    /**
+     * A read-only view of the first customers of an array.
+     */
+    private static class CustomerList extends AbstractList<Person> implements RandomAccess {
+
+        private final Person[] customers;
+        private final int count;
+
+        CustomerList(Person[] customers, int count) {
+            this.customers = customers;
+            this.count = count;
+        }
+
+        @Override
+        public Person get(int index) {
+            return customers[Objects.checkIndex(index, count)];
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+}
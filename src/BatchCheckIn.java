@@ -0,0 +1,204 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Replays a file of names and social security numbers, one per line, as if they were typed at the front
+ * desk, for example a dump from an offline badge reader.
+ * <p>
+ * The file is read in chunks of lines. Each chunk is validated and looked up on a worker thread while the
+ * next chunks are read, and the results are collected in file order, so the workout entries of paying
+ * customers are appended in the same order as the lines. All entries are dated on the day of the replay
+ * and written through one buffered workout sheet that is flushed at the end.
+ */
+public class BatchCheckIn {
+
+    private static final int CHUNK_LINES = 8192;
+
+    private final RegisterPerson rules = new RegisterPerson();
+    private final CheckInMetrics metrics = CheckInMetrics.global();
+    private final CustomerIndex customers;
+    private final int threads;
+
+    /**
+     * Creates a replay over a register with one worker thread per core.
+     *
+     * @param customers The customers that can check in.
+     */
+    public BatchCheckIn(CustomerIndex customers) {
+        this(customers, Runtime.getRuntime().availableProcessors());
+    }
+
+    public BatchCheckIn(CustomerIndex customers, int threads) {
+        this.customers = customers;
+        this.threads = Math.max(threads, 1);
+    }
+
+    /**
+     * Checks in every line of a file and appends a workout for every paying customer.
+     *
+     * @param inputFile The file with one name or social security number per line.
+     * @param workoutSheet The workout sheet to append workouts to. It is flushed, but not closed.
+     * @param date The date of the workouts.
+     * @return The counts of every outcome.
+     * @throws IOException If the file cannot be read or a workout cannot be written.
+     */
+    public Summary run(Path inputFile, WorkoutSink workoutSheet, LocalDate date) throws IOException {
+        long start = System.nanoTime();
+        Summary summary = new Summary();
+        ExecutorService workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "batch-check-in");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ArrayDeque<Future<ChunkResult>> inFlight = new ArrayDeque<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(inputFile)) {
+            boolean endOfFile = false;
+            while (!endOfFile || !inFlight.isEmpty()) {
+                while (!endOfFile && inFlight.size() < threads * 2) {
+                    ArrayList<String> lines = new ArrayList<>(CHUNK_LINES);
+                    String line;
+                    while (lines.size() < CHUNK_LINES && (line = reader.readLine()) != null) {
+                        lines.add(line);
+                    }
+                    endOfFile = lines.size() < CHUNK_LINES;
+                    if (!lines.isEmpty()) {
+                        inFlight.add(workers.submit(() -> checkIn(lines)));
+                    }
+                }
+                if (!inFlight.isEmpty()) {
+                    ChunkResult result = inFlight.poll().get();
+                    for (int i = 0; i < result.payingCount; i++) {
+                        workoutSheet.append(customers.get(result.payingPositions[i]), date);
+                    }
+                    summary.add(result);
+                }
+            }
+            workoutSheet.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Replay of '" + inputFile + "' was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Replay of '" + inputFile + "' failed", e.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+        summary.elapsedNanos = System.nanoTime() - start;
+        return summary;
+    }
+
+    private ChunkResult checkIn(ArrayList<String> lines) {
+        ChunkResult result = new ChunkResult(lines.size());
+        for (String line : lines) {
+            String input = rules.classifyInput(line.trim());
+            if (input.equals(RegisterPerson.INPUT_IS_EMPTY)) {
+                result.emptyInputs++;
+                continue;
+            } else if (input.equals(RegisterPerson.INVALID_NUMBER)) {
+                result.invalidNumbers++;
+                continue;
+            }
+
+            int position = customers.findPosition(input);
+            boolean isPayingCustomer = position >= 0 && customers.isPayingCustomer(position);
+            if (position < 0) {
+                result.notCustomers++;
+            } else if (isPayingCustomer) {
+                result.payingPositions[result.payingCount++] = position;
+            } else {
+                result.unpaidCustomers++;
+            }
+            metrics.countCheckIn(position >= 0, isPayingCustomer);
+        }
+        return result;
+    }
+
+    private static class ChunkResult {
+
+        private final int lines;
+        private final int[] payingPositions;
+        private int payingCount;
+        private int unpaidCustomers;
+        private int notCustomers;
+        private int emptyInputs;
+        private int invalidNumbers;
+
+        ChunkResult(int lines) {
+            this.lines = lines;
+            this.payingPositions = new int[lines];
+        }
+    }
+
+    /**
+     * The outcome of a replay.
+     */
+    public static class Summary {
+
+        private long lines;
+        private long payingCustomers;
+        private long unpaidCustomers;
+        private long notCustomers;
+        private long emptyInputs;
+        private long invalidNumbers;
+        private long elapsedNanos;
+
+        private void add(ChunkResult result) {
+            lines += result.lines;
+            payingCustomers += result.payingCount;
+            unpaidCustomers += result.unpaidCustomers;
+            notCustomers += result.notCustomers;
+            emptyInputs += result.emptyInputs;
+            invalidNumbers += result.invalidNumbers;
+        }
+
+        public long getLines() {
+            return lines;
+        }
+
+        public long getPayingCustomers() {
+            return payingCustomers;
+        }
+
+        public long getUnpaidCustomers() {
+            return unpaidCustomers;
+        }
+
+        public long getNotCustomers() {
+            return notCustomers;
+        }
+
+        public long getEmptyInputs() {
+            return emptyInputs;
+        }
+
+        public long getInvalidNumbers() {
+            return invalidNumbers;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            double seconds = elapsedNanos / 1e9;
+            return String.format("Replayed %d lines in %.2f s (%.0f lines/sec):%n"
+                            + "  %d paying customers, workouts written%n"
+                            + "  %d customers who have not paid in the last year%n"
+                            + "  %d not customers%n"
+                            + "  %d empty lines%n"
+                            + "  %d SSNs with the wrong length",
+                    lines, seconds, seconds > 0 ? lines / seconds : 0, payingCustomers, unpaidCustomers,
+                    notCustomers, emptyInputs, invalidNumbers);
+        }
+    }
+}
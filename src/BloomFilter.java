@@ -0,0 +1,118 @@
+/**
+ * A Bloom filter over packed social security numbers and strings. It answers "definitely not added" or
+ * "maybe added": a key that was added is never rejected, and a key that was not is let through with about
+ * the false-positive rate the filter was sized for.
+ * <p>
+ * The bits live in one long[] and every key is hashed once to 64 bits, from which all probe positions are
+ * derived, so a test costs a few array reads and never allocates.
+ */
+public class BloomFilter {
+
+    private static final int MAX_HASH_COUNT = 16;
+    private static final long MAX_WORDS = 1L << 26;
+
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * Creates an empty filter sized for a number of keys.
+     *
+     * @param expectedKeys The number of keys that will be added.
+     * @param falsePositiveRate The share of keys never added that may be let through, between 0 and 1.
+     */
+    public BloomFilter(int expectedKeys, double falsePositiveRate) {
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("False-positive rate must be between 0 and 1: " + falsePositiveRate);
+        }
+        int keys = Math.max(expectedKeys, 1);
+        long optimalBits = (long) Math.ceil(-keys * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        long words = Math.min(Math.max((optimalBits + 63) / 64, 1), MAX_WORDS);
+        bits = new long[(int) words];
+        bitCount = words * 64;
+        hashCount = (int) Math.max(Math.min(Math.round((double) bitCount / keys * Math.log(2)), MAX_HASH_COUNT), 1);
+    }
+
+    public void add(long key) {
+        set(mix(key));
+    }
+
+    public void add(CharSequence key) {
+        set(hash(key));
+    }
+
+    /**
+     * Tests a packed social security number, or any other long key.
+     *
+     * @param key The key.
+     * @return False if the key was definitely never added; true if it may have been.
+     */
+    public boolean mightContain(long key) {
+        return test(mix(key));
+    }
+
+    /**
+     * Tests a string key. The comparison is exact, so keys should be normalized the same way when added.
+     *
+     * @param key The key.
+     * @return False if the key was definitely never added; true if it may have been.
+     */
+    public boolean mightContain(CharSequence key) {
+        return test(hash(key));
+    }
+
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    private void set(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = position(h1 + i * h2);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private boolean test(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = position(h1 + i * h2);
+            if ((bits[(int) (bit >>> 6)] & 1L << bit) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Maps a 32 bit hash onto the bits with a multiply instead of a division.
+     */
+    private long position(int hash) {
+        return ((hash & 0xFFFFFFFFL) * bitCount) >>> 32;
+    }
+
+    static long hash(CharSequence key) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash = (hash ^ key.charAt(i)) * 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * The finalizer of SplitMix64, so that keys that differ in a few low bits, like consecutive SSNs,
+     * land on unrelated bits.
+     */
+    static long mix(long key) {
+        long z = key;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,193 @@
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded cache from what was typed at the desk, a name or an SSN, to the customer it resolved to and
+ * whether they were paying, so the regulars who make most of the check-ins skip the lookup.
+ * <p>
+ * Eviction follows TinyLFU: a count-min sketch estimates how often every input was looked up recently, and a
+ * new entry only replaces an old one if its input is looked up more often. The entries live in sets of 8, and
+ * the victim is the least frequent entry in the new entry's set, so eviction samples 8 entries instead of
+ * keeping them sorted. Reads and writes never lock; two threads adding at once may lose one of the entries.
+ * <p>
+ * Every entry remembers the register and the day it was resolved for. It no longer hits once the register is
+ * reloaded or the date changes, and is the first to be replaced.
+ */
+public class CheckInCache {
+
+    private static final int WAYS = 8;
+    private static final int SKETCH_ROWS = 4;
+    private static final int MAX_FREQUENCY = 15;
+    private static final int SAMPLE_FACTOR = 10;
+
+    private final AtomicReferenceArray<Entry> entries;
+    private final int setMask;
+    private final int[] sketch;
+    private final int sketchMask;
+    private final int sampleSize;
+    private int accessesSinceAging;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param maximumSize The most entries to keep. It is rounded up to a power of two, at least 8.
+     */
+    public CheckInCache(int maximumSize) {
+        int sets = Integer.highestOneBit(Math.max((maximumSize + WAYS - 1) / WAYS, 1) * 2 - 1);
+        entries = new AtomicReferenceArray<>(sets * WAYS);
+        setMask = sets - 1;
+        int sketchWidth = sets * WAYS;
+        sketch = new int[SKETCH_ROWS * sketchWidth];
+        sketchMask = sketchWidth - 1;
+        sampleSize = SAMPLE_FACTOR * sketchWidth;
+    }
+
+    /**
+     * Finds the customer an input resolved to, and counts the access for the eviction policy.
+     *
+     * @param input The classified input.
+     * @param customerIndex The current register.
+     * @param todayEpochDay The current day, as LocalDate.toEpochDay().
+     * @return The entry, or null if the input is not cached for this register and day.
+     */
+    public Entry get(String input, CustomerIndex customerIndex, long todayEpochDay) {
+        int hash = spread(input.hashCode());
+        recordAccess(hash);
+        int set = (hash & setMask) * WAYS;
+        for (int way = 0; way < WAYS; way++) {
+            Entry entry = entries.get(set + way);
+            if (entry != null && entry.hash == hash && entry.input.equals(input)
+                    && entry.isCurrent(customerIndex, todayEpochDay)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds the customer an input resolved to, if the input is looked up at least as often as the entry it
+     * would replace.
+     *
+     * @param input The classified input.
+     * @param customerIndex The register the customer was found in.
+     * @param todayEpochDay The day the paying verdict is for.
+     * @param position The position of the customer in the register.
+     * @param person The customer.
+     * @param isPayingCustomer True if the customer is paying on that day.
+     */
+    public void put(String input, CustomerIndex customerIndex, long todayEpochDay, int position, Person person,
+                    boolean isPayingCustomer) {
+        int hash = spread(input.hashCode());
+        Entry added = new Entry(hash, input, customerIndex, todayEpochDay, position, person, isPayingCustomer);
+        int set = (hash & setMask) * WAYS;
+        int victim = -1;
+        int victimFrequency = Integer.MAX_VALUE;
+        for (int way = 0; way < WAYS; way++) {
+            Entry entry = entries.get(set + way);
+            if (entry == null || !entry.isCurrent(customerIndex, todayEpochDay)
+                    || entry.hash == hash && entry.input.equals(input)) {
+                entries.set(set + way, added);
+                return;
+            }
+            int frequency = frequency(entry.hash);
+            if (frequency < victimFrequency) {
+                victim = way;
+                victimFrequency = frequency;
+            }
+        }
+        if (frequency(hash) >= victimFrequency) {
+            entries.set(set + victim, added);
+        }
+    }
+
+    /**
+     * Removes every entry. Not needed on reload or at midnight, since entries of an old register or day never hit.
+     */
+    public void clear() {
+        for (int i = 0; i < entries.length(); i++) {
+            entries.set(i, null);
+        }
+    }
+
+    public int getMaximumSize() {
+        return entries.length();
+    }
+
+    /**
+     * Counts an access in every row of the sketch. After sampleSize accesses all counts are halved, so inputs
+     * that were popular long ago give way to today's regulars. The counts are updated without locking, so an
+     * increment can be lost under contention, which only makes the estimate a little lower.
+     */
+    private void recordAccess(int hash) {
+        for (int row = 0; row < SKETCH_ROWS; row++) {
+            int slot = sketchSlot(hash, row);
+            if (sketch[slot] < MAX_FREQUENCY) {
+                sketch[slot]++;
+            }
+        }
+        if (++accessesSinceAging >= sampleSize) {
+            accessesSinceAging = 0;
+            for (int i = 0; i < sketch.length; i++) {
+                sketch[i] >>>= 1;
+            }
+        }
+    }
+
+    private int frequency(int hash) {
+        int frequency = MAX_FREQUENCY;
+        for (int row = 0; row < SKETCH_ROWS; row++) {
+            frequency = Math.min(frequency, sketch[sketchSlot(hash, row)]);
+        }
+        return frequency;
+    }
+
+    private int sketchSlot(int hash, int row) {
+        int h = (hash + row) * 0x9E3779B9;
+        return row * (sketchMask + 1) + ((h ^ h >>> 16) & sketchMask);
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x85EBCA6B;
+        return h ^ h >>> 15;
+    }
+
+    /**
+     * A cached lookup: the customer an input resolved to and whether they were paying.
+     */
+    public static class Entry {
+
+        private final int hash;
+        private final String input;
+        private final CustomerIndex customerIndex;
+        private final long todayEpochDay;
+        private final int position;
+        private final Person person;
+        private final boolean isPayingCustomer;
+
+        Entry(int hash, String input, CustomerIndex customerIndex, long todayEpochDay, int position, Person person,
+              boolean isPayingCustomer) {
+            this.hash = hash;
+            this.input = input;
+            this.customerIndex = customerIndex;
+            this.todayEpochDay = todayEpochDay;
+            this.position = position;
+            this.person = person;
+            this.isPayingCustomer = isPayingCustomer;
+        }
+
+        public int getPosition() {
+            return position;
+        }
+
+        public Person getPerson() {
+            return person;
+        }
+
+        public boolean isPayingCustomer() {
+            return isPayingCustomer;
+        }
+
+        private boolean isCurrent(CustomerIndex currentIndex, long currentEpochDay) {
+            return customerIndex == currentIndex && todayEpochDay == currentEpochDay;
+        }
+    }
+}
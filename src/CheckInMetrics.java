@@ -0,0 +1,143 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms for the check-in hot path. Recording never locks, so the metrics can stay
+ * on at the busiest doors. The counters are shared by every RegisterPerson and CheckInService in the process
+ * through global().
+ */
+public class CheckInMetrics {
+
+    private static final CheckInMetrics GLOBAL = new CheckInMetrics();
+    private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /** Check-ins of customers with an active membership. */
+    public final LongAdder payingCustomers = new LongAdder();
+    /** Check-ins of customers who have not paid in the last year. */
+    public final LongAdder unpaidCustomers = new LongAdder();
+    /** Check-ins of people who are not customers. */
+    public final LongAdder notCustomers = new LongAdder();
+    /** Inputs that were empty. */
+    public final LongAdder emptyInputs = new LongAdder();
+    /** Inputs that were only digits, but not 10 of them. */
+    public final LongAdder invalidNumbers = new LongAdder();
+    /** Lookups the customer Bloom filter answered alone, as definitely not a customer. */
+    public final LongAdder filterRejected = new LongAdder();
+    /** Lookups the customer Bloom filter let through to the index. */
+    public final LongAdder filterPassed = new LongAdder();
+    /** Lookups let through by the filter that were not customers after all. */
+    public final LongAdder filterFalsePositives = new LongAdder();
+    /** Check-ins of customers answered from the check-in cache. */
+    public final LongAdder cacheHits = new LongAdder();
+    /** Check-ins that had to look the customer up. */
+    public final LongAdder cacheMisses = new LongAdder();
+
+    /** From a valid input to the answer, including the workout entry. */
+    public final LatencyHistogram checkIn = new LatencyHistogram();
+    /** Finding the customer and whether they are paying. */
+    public final LatencyHistogram lookup = new LatencyHistogram();
+    /** Writing one workout entry straight to the workout sheet. */
+    public final LatencyHistogram workoutAppend = new LatencyHistogram();
+    /** From queueing a workout entry in a WorkoutLog until the writer thread has appended it. */
+    public final LatencyHistogram workoutQueue = new LatencyHistogram();
+    /** Reading the customer text file. */
+    public final LatencyHistogram customerFile = new LatencyHistogram();
+    /** Loading the register at start-up, from the snapshot or the text file. */
+    public final LatencyHistogram customerLoad = new LatencyHistogram();
+
+    public static CheckInMetrics global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Counts the outcome of a check-in of a valid input.
+     *
+     * @param isCustomer True if the input matched a customer.
+     * @param isPayingCustomer True if that customer has an active membership.
+     */
+    public void countCheckIn(boolean isCustomer, boolean isPayingCustomer) {
+        (isPayingCustomer ? payingCustomers : isCustomer ? unpaidCustomers : notCustomers).increment();
+    }
+
+    /**
+     * Gives the share of check-ins answered from the check-in cache.
+     *
+     * @return The hit rate, from 0 to 1, or 0 if nothing was looked up.
+     */
+    public double getCacheHitRate() {
+        long hits = cacheHits.sum();
+        long lookups = hits + cacheMisses.sum();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Describes the counters and the latency percentiles of every stage.
+     *
+     * @return A report with one line per stage, durations in milliseconds.
+     */
+    public String report() {
+        long valid = payingCustomers.sum() + unpaidCustomers.sum() + notCustomers.sum();
+        long empty = emptyInputs.sum();
+        long wrongLength = invalidNumbers.sum();
+        return "Check-in metrics at " + LocalDateTime.now().format(TIMESTAMP_FORMATTER) + ":\n"
+                + "  " + valid + " check-ins: " + payingCustomers.sum() + " paying, " + unpaidCustomers.sum()
+                + " unpaid, " + notCustomers.sum() + " not customers; " + (empty + wrongLength)
+                + " invalid inputs (" + empty + " empty, " + wrongLength + " wrong length)\n"
+                + "  customer filter: " + filterRejected.sum() + " rejected, " + filterPassed.sum() + " passed, "
+                + filterFalsePositives.sum() + " false positives\n"
+                + "  check-in cache: " + cacheHits.sum() + " hits, " + cacheMisses.sum() + " misses, "
+                + String.format("%.1f", getCacheHitRate() * 100) + "% hit rate\n"
+                + reportStage("check-in", checkIn)
+                + reportStage("lookup", lookup)
+                + reportStage("workout append", workoutAppend)
+                + reportStage("workout queue", workoutQueue)
+                + reportStage("customer file", customerFile)
+                + reportStage("customer load", customerLoad);
+    }
+
+    /**
+     * Writes the report every interval, to the end of a file or to the console.
+     *
+     * @param intervalMillis The time between reports.
+     * @param filePath The file to append the reports to, or null for the console.
+     * @return A handle that stops the reports when closed.
+     */
+    public Closeable startReporting(long intervalMillis, Path filePath) {
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "check-in-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> {
+            String report = report();
+            if (filePath == null) {
+                System.out.println(report);
+                return;
+            }
+            try {
+                Files.writeString(filePath, report + "\n", StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.out.println("Error while handling file: " + filePath);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        return reporter::shutdown;
+    }
+
+    private static String reportStage(String name, LatencyHistogram histogram) {
+        return String.format("  %-15s count %d, mean %.3f, p50 %.3f, p90 %.3f, p99 %.3f, p99.9 %.3f, max %.3f ms%n",
+                name, histogram.getCount(), histogram.getMean() / 1e6,
+                histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(90) / 1e6,
+                histogram.getValueAtPercentile(99) / 1e6, histogram.getValueAtPercentile(99.9) / 1e6,
+                histogram.getMax() / 1e6);
+    }
+}
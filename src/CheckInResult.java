@@ -0,0 +1,75 @@
+import java.util.concurrent.CompletableFuture;
+
+public class CheckInResult {
+
+    /**
+     * The outcome of a check-in, from worst to best.
+     */
+    public enum Status {
+        INVALID_INPUT,
+        NOT_A_CUSTOMER,
+        NOT_PAYING,
+        PAYING
+    }
+
+    private final String input;
+    private final Status status;
+    private final Person person;
+    private final String message;
+    private final CompletableFuture<Void> workoutWritten;
+
+    public CheckInResult(String input, Status status, Person person, String message) {
+        this(input, status, person, message, CompletableFuture.completedFuture(null));
+    }
+
+    /**
+     * Creates the result of a check-in that queued a workout.
+     *
+     * @param input The classified input.
+     * @param status The outcome of the check-in.
+     * @param person The customer, or null.
+     * @param message The message to show.
+     * @param workoutWritten Completes when the workout is written, or exceptionally if it could not be.
+     */
+    public CheckInResult(String input, Status status, Person person, String message,
+                         CompletableFuture<Void> workoutWritten) {
+        this.input = input;
+        this.status = status;
+        this.person = person;
+        this.message = message;
+        this.workoutWritten = workoutWritten;
+    }
+
+    public String getInput() {
+        return input;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Person getPerson() {
+        return person;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Gives the acknowledgement of the workout entry, so the answer can be shown before it is written.
+     *
+     * @return A future that completes when the workout is written, at once if no workout was queued.
+     */
+    public CompletableFuture<Void> getWorkoutWritten() {
+        return workoutWritten;
+    }
+
+    public boolean isCustomer() {
+        return status == Status.NOT_PAYING || status == Status.PAYING;
+    }
+
+    public boolean isPayingCustomer() {
+        return status == Status.PAYING;
+    }
+}
@@ -0,0 +1,222 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A local HTTP front end for the check-in service, so card readers at every door can share one process.
+ * <p>
+ * GET /checkin?input=&lt;name or SSN&gt; answers with the same message as the console, and the status of
+ * the check-in in the X-Check-In-Status header. Workouts of paying customers are queued in the workout log
+ * before the answer is sent.
+ * <p>
+ * GET /lookup?input=&lt;name or SSN&gt; answers like /checkin, but without checking in or writing a workout.
+ * <p>
+ * GET /suggest?input=&lt;part of a name&gt; lists up to 10 customers whose name starts with, or is spelled
+ * almost like, the input, one "SSN, name" per line.
+ * <p>
+ * When started with a workout history, GET /history?input=&lt;SSN&gt;&amp;from=&lt;date&gt;&amp;to=&lt;date&gt;
+ * lists the visits of a member, this month by default, and GET /attendance?from=&lt;date&gt;&amp;to=&lt;date&gt;
+ * counts the workouts per day, today by default.
+ * <p>
+ * GET /metrics answers with the check-in counters and latency percentiles.
+ */
+public class CheckInServer {
+
+    static final String CHECK_IN_PATH = "/checkin";
+    static final String LOOKUP_PATH = "/lookup";
+    static final String SUGGEST_PATH = "/suggest";
+    static final String HISTORY_PATH = "/history";
+    static final String ATTENDANCE_PATH = "/attendance";
+    static final String METRICS_PATH = "/metrics";
+    static final String STATUS_HEADER = "X-Check-In-Status";
+
+    private static final int SUGGESTION_LIMIT = 10;
+
+    private final CheckInService service;
+    private final WorkoutHistoryIndex workoutHistory;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a server bound to localhost. Requests are handled on virtual threads when the JVM has them.
+     *
+     * @param service The check-in service that answers the requests.
+     * @param port The port to listen on, or 0 for any free port.
+     * @throws IOException If the port cannot be bound.
+     */
+    public CheckInServer(CheckInService service, int port) throws IOException {
+        this(service, port, null);
+    }
+
+    /**
+     * Creates a server bound to localhost that also answers questions about the workout history.
+     *
+     * @param service The check-in service that answers the requests.
+     * @param port The port to listen on, or 0 for any free port.
+     * @param workoutHistory The index of the workout sheet the service writes to, or null.
+     * @throws IOException If the port cannot be bound.
+     */
+    public CheckInServer(CheckInService service, int port, WorkoutHistoryIndex workoutHistory) throws IOException {
+        this.service = service;
+        this.workoutHistory = workoutHistory;
+        this.executor = CheckInService.newCheckInExecutor();
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext(CHECK_IN_PATH, exchange -> handleCheckIn(exchange, true));
+        server.createContext(LOOKUP_PATH, exchange -> handleCheckIn(exchange, false));
+        server.createContext(SUGGEST_PATH, this::handleSuggest);
+        server.createContext(METRICS_PATH, exchange -> {
+            try (exchange) {
+                send(exchange, 200, CheckInMetrics.global().report());
+            }
+        });
+        if (workoutHistory != null) {
+            server.createContext(HISTORY_PATH, this::handleHistory);
+            server.createContext(ATTENDANCE_PATH, this::handleAttendance);
+        }
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("Check-in server listening on http://localhost:" + getPort() + CHECK_IN_PATH);
+    }
+
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handleCheckIn(HttpExchange exchange, boolean isCheckIn) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                send(exchange, 405, "Only GET is supported");
+                return;
+            }
+            String input = queryParameter(exchange.getRequestURI().getRawQuery(), "input");
+            if (input == null) {
+                send(exchange, 400, "Missing query parameter 'input'");
+                return;
+            }
+
+            CheckInResult result = isCheckIn ? service.checkIn(input) : service.lookUp(input);
+            exchange.getResponseHeaders().set(STATUS_HEADER, result.getStatus().name());
+            send(exchange, result.getStatus() == CheckInResult.Status.INVALID_INPUT ? 400 : 200,
+                    result.getMessage());
+        }
+    }
+
+    private void handleSuggest(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String input = queryParameter(exchange.getRequestURI().getRawQuery(), "input");
+            if (input == null || input.isBlank()) {
+                send(exchange, 400, "Missing query parameter 'input'");
+                return;
+            }
+
+            StringBuilder body = new StringBuilder();
+            for (Person p : service.getCustomerIndex().getNameSearchIndex().suggest(input, SUGGESTION_LIMIT)) {
+                body.append(p.getSocialSecurityNumber()).append(", ").append(p.getName()).append('\n');
+            }
+            send(exchange, 200, body.toString());
+        }
+    }
+
+    private void handleHistory(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String rawQuery = exchange.getRequestURI().getRawQuery();
+            String socialSecurityNumber = queryParameter(rawQuery, "input");
+            if (socialSecurityNumber == null || socialSecurityNumber.isBlank()) {
+                send(exchange, 400, "Missing query parameter 'input'");
+                return;
+            }
+            LocalDate today = LocalDate.now();
+            LocalDate from = dateParameter(rawQuery, "from", today.withDayOfMonth(1));
+            LocalDate to = dateParameter(rawQuery, "to", today);
+            if (from == null || to == null) {
+                send(exchange, 400, "Dates must be written as yyyy-MM-dd");
+                return;
+            }
+
+            workoutHistory.refresh();
+            StringBuilder body = new StringBuilder();
+            body.append(workoutHistory.countVisits(socialSecurityNumber.trim(), from, to)).append(" visits from ")
+                    .append(from).append(" to ").append(to).append('\n');
+            for (LocalDate visit : workoutHistory.findVisits(socialSecurityNumber.trim(), from, to)) {
+                body.append(visit).append('\n');
+            }
+            send(exchange, 200, body.toString());
+        }
+    }
+
+    private void handleAttendance(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String rawQuery = exchange.getRequestURI().getRawQuery();
+            LocalDate today = LocalDate.now();
+            LocalDate from = dateParameter(rawQuery, "from", today);
+            LocalDate to = dateParameter(rawQuery, "to", from == null ? today : from);
+            if (from == null || to == null) {
+                send(exchange, 400, "Dates must be written as yyyy-MM-dd");
+                return;
+            }
+
+            workoutHistory.refresh();
+            StringBuilder body = new StringBuilder();
+            for (Map.Entry<LocalDate, Integer> day : workoutHistory.findAttendance(from, to).entrySet()) {
+                body.append(day.getKey()).append(", ").append(day.getValue()).append('\n');
+            }
+            send(exchange, 200, body.toString());
+        }
+    }
+
+    /**
+     * @return The date in a query parameter, the default if the parameter is missing, or null if it is not a date.
+     */
+    private static LocalDate dateParameter(String rawQuery, String name, LocalDate defaultDate) {
+        String value = queryParameter(rawQuery, name);
+        if (value == null) {
+            return defaultDate;
+        }
+        try {
+            return LocalDate.parse(value.trim(), RegisterPerson.DATE_FORMATTER);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    static String queryParameter(String rawQuery, String name) {
+        if (rawQuery == null) {
+            return null;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals > 0 && parameter.substring(0, equals).equals(name)) {
+                return URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+}
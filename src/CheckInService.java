@@ -0,0 +1,215 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A thread-safe check-in engine that several entrance terminals can share. Lookups read an immutable
+ * CustomerIndex, so they never lock, and workouts are handed to a WorkoutLog with a single writer thread.
+ * A check-in returns as soon as its workout is queued; the result carries the acknowledgement of the write.
+ */
+public class CheckInService implements Closeable {
+
+    private static final int CACHE_SIZE = Integer.getInteger("gym.checkInCacheSize", 4096);
+
+    private final RegisterPerson rules = new RegisterPerson();
+    private final CheckInMetrics metrics = CheckInMetrics.global();
+    private final WorkoutLog workoutLog;
+    private final ExecutorService executor;
+    private final CheckInCache cache;
+    private volatile CustomerIndex customerIndex;
+
+    /**
+     * Creates a check-in service that runs submitted check-ins on virtual threads when the JVM supports
+     * them, and on a pool with one thread per core otherwise.
+     *
+     * @param customerIndex The customers that can check in.
+     * @param workoutLog The log that workouts of paying customers are written to.
+     */
+    public CheckInService(CustomerIndex customerIndex, WorkoutLog workoutLog) {
+        this(customerIndex, workoutLog, newCheckInExecutor());
+    }
+
+    public CheckInService(CustomerIndex customerIndex, WorkoutLog workoutLog, ExecutorService executor) {
+        this(customerIndex, workoutLog, executor, CACHE_SIZE > 0 ? new CheckInCache(CACHE_SIZE) : null);
+    }
+
+    /**
+     * Creates a check-in service that answers repeat visitors from a cache. The default cache holds 4096
+     * inputs, set with -Dgym.checkInCacheSize; 0 turns it off.
+     *
+     * @param customerIndex The customers that can check in.
+     * @param workoutLog The log that workouts of paying customers are written to.
+     * @param executor The executor that submitted check-ins run on.
+     * @param cache The cache of recently resolved customers, or null.
+     */
+    public CheckInService(CustomerIndex customerIndex, WorkoutLog workoutLog, ExecutorService executor,
+                          CheckInCache cache) {
+        this.customerIndex = customerIndex;
+        this.workoutLog = workoutLog;
+        this.executor = executor;
+        this.cache = cache;
+    }
+
+    /**
+     * Checks in a person by name or social security number, with the same rules as RegisterPerson.run().
+     * A paying customer gets a workout queued in the workout log.
+     *
+     * @param nameOrSocialSecurityNumber The name or social security number entered at the terminal.
+     * @return The result of the check-in, including the message to show.
+     */
+    public CheckInResult checkIn(String nameOrSocialSecurityNumber) {
+        return checkIn(nameOrSocialSecurityNumber, true);
+    }
+
+    /**
+     * Finds out what a check-in would answer, without queueing a workout or counting a check-in.
+     *
+     * @param nameOrSocialSecurityNumber The name or social security number to look up.
+     * @return The result a check-in would have, including the message to show.
+     */
+    public CheckInResult lookUp(String nameOrSocialSecurityNumber) {
+        return checkIn(nameOrSocialSecurityNumber, false);
+    }
+
+    private CheckInResult checkIn(String nameOrSocialSecurityNumber, boolean isCheckIn) {
+        String input = rules.classifyInput(nameOrSocialSecurityNumber.trim());
+        CheckInResult invalidInput = checkInput(input);
+        if (invalidInput != null) {
+            return invalidInput;
+        }
+
+        long start = System.nanoTime();
+        CustomerIndex customers = customerIndex;
+        long todayEpochDay = customers.getTodayEpochDay();
+        CheckInCache.Entry cached = cache == null ? null : cache.get(input, customers, todayEpochDay);
+        boolean isCustomer;
+        Person person;
+        boolean isPayingCustomer;
+        if (cached != null) {
+            isCustomer = true;
+            person = cached.getPerson();
+            isPayingCustomer = cached.isPayingCustomer();
+            metrics.cacheHits.increment();
+        } else {
+            int position = customers.findPosition(input);
+            isCustomer = position >= 0;
+            person = isCustomer ? customers.get(position) : null;
+            isPayingCustomer = isCustomer && customers.isPayingCustomer(position);
+            if (cache != null) {
+                metrics.cacheMisses.increment();
+                if (isCustomer) {
+                    cache.put(input, customers, todayEpochDay, position, person, isPayingCustomer);
+                }
+            }
+        }
+        CompletableFuture<Void> workoutWritten = CompletableFuture.completedFuture(null);
+        if (isCheckIn) {
+            metrics.lookup.recordSince(start);
+            if (isPayingCustomer) {
+                workoutWritten = workoutLog.append(person);
+            }
+        }
+
+        CheckInResult result = new CheckInResult(input, status(isCustomer, isPayingCustomer), person,
+                rules.printIfPersonIsCustomer(input, isCustomer, isPayingCustomer), workoutWritten);
+        if (isCheckIn) {
+            metrics.countCheckIn(isCustomer, isPayingCustomer);
+            metrics.checkIn.recordSince(start);
+        }
+        return result;
+    }
+
+    /**
+     * Gives the result for an input that cannot be looked up, as classified by RegisterPerson.classifyInput.
+     *
+     * @param input The classified input.
+     * @return The result with the message to show, or null if the input can be looked up.
+     */
+    static CheckInResult checkInput(String input) {
+        if (input.equals(RegisterPerson.INPUT_IS_EMPTY)) {
+            return new CheckInResult(input, CheckInResult.Status.INVALID_INPUT, null,
+                    "Person or SSN input cannot be empty");
+        } else if (input.equals(RegisterPerson.INVALID_NUMBER)) {
+            return new CheckInResult(input, CheckInResult.Status.INVALID_INPUT, null,
+                    "The SSN you have entered is not the correct length. 10 numbers are required");
+        }
+        return null;
+    }
+
+    private static CheckInResult.Status status(boolean isCustomer, boolean isPayingCustomer) {
+        return !isCustomer ? CheckInResult.Status.NOT_A_CUSTOMER
+                : isPayingCustomer ? CheckInResult.Status.PAYING : CheckInResult.Status.NOT_PAYING;
+    }
+
+    /**
+     * Runs a check-in on the service's executor.
+     *
+     * @param nameOrSocialSecurityNumber The name or social security number entered at the terminal.
+     * @return A future with the result of the check-in.
+     */
+    public CompletableFuture<CheckInResult> submit(String nameOrSocialSecurityNumber) {
+        return CompletableFuture.supplyAsync(() -> checkIn(nameOrSocialSecurityNumber), executor);
+    }
+
+    public CustomerIndex getCustomerIndex() {
+        return customerIndex;
+    }
+
+    /**
+     * Replaces the customers that can check in. Check-ins already running keep using the old index.
+     *
+     * @param customerIndex The new customer index.
+     */
+    public void setCustomerIndex(CustomerIndex customerIndex) {
+        this.customerIndex = customerIndex;
+    }
+
+    public CheckInCache getCache() {
+        return cache;
+    }
+
+    public WorkoutLog getWorkoutLog() {
+        return workoutLog;
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Waits for running check-ins to finish and closes the workout log.
+     *
+     * @throws IOException If the workout log could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workoutLog.close();
+    }
+
+    /**
+     * Creates an executor with one virtual thread per task on JVMs that have virtual threads,
+     * and a fixed pool with one thread per core on older JVMs.
+     *
+     * @return The executor to run check-ins on.
+     */
+    static ExecutorService newCheckInExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+                Thread thread = new Thread(r, "check-in");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
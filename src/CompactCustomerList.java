@@ -0,0 +1,233 @@
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * A customer list that keeps every member in primitive arrays instead of one Person with two strings and a
+ * LocalDate each: the SSN packed into a long, the paid date as an epoch day and the name as an id into a
+ * pool of distinct names. That is 16 bytes per member plus one string per distinct name, against roughly
+ * 150 bytes for a Person.
+ * <p>
+ * get() materializes a new Person on every call. It is a copy, so changing it does not change the list.
+ * The list can be appended to and its members replaced with set(), but it cannot shrink.
+ */
+public class CompactCustomerList extends AbstractList<Person> implements RandomAccess {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private long[] socialSecurityNumbers;
+    private int[] paidEpochDays;
+    private int[] nameIds;
+    private String[] names;
+    private int size;
+    private int nameCount;
+    private HashMap<String, Integer> nameIdsByName;
+    private HashMap<Integer, String> unpackableSocialSecurityNumbers;
+
+    public CompactCustomerList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty list with room for a number of members before it has to grow.
+     *
+     * @param expectedSize The number of members that will be added.
+     */
+    public CompactCustomerList(int expectedSize) {
+        int capacity = Math.max(expectedSize, 1);
+        socialSecurityNumbers = new long[capacity];
+        paidEpochDays = new int[capacity];
+        nameIds = new int[capacity];
+        names = new String[Math.min(capacity, DEFAULT_CAPACITY)];
+    }
+
+    /**
+     * Creates a list over arrays that were already deduplicated, for example read from a snapshot.
+     * The arrays are used as they are, not copied.
+     *
+     * @param socialSecurityNumbers The packed social security number of every member.
+     * @param paidEpochDays The day every member paid, as LocalDate.toEpochDay().
+     * @param nameIds The position in names of the name of every member.
+     * @param names The distinct names.
+     */
+    CompactCustomerList(long[] socialSecurityNumbers, int[] paidEpochDays, int[] nameIds, String[] names) {
+        this.socialSecurityNumbers = socialSecurityNumbers;
+        this.paidEpochDays = paidEpochDays;
+        this.nameIds = nameIds;
+        this.names = names;
+        this.size = socialSecurityNumbers.length;
+        this.nameCount = names.length;
+    }
+
+    /**
+     * Copies customers into a compact list that is exactly as large as it needs to be.
+     *
+     * @param customers The customers to copy, in order.
+     * @return The compact list.
+     */
+    public static CompactCustomerList copyOf(List<Person> customers) {
+        CompactCustomerList copy;
+        if (customers instanceof CompactCustomerList compact) {
+            copy = new CompactCustomerList(Arrays.copyOf(compact.socialSecurityNumbers, compact.size),
+                    Arrays.copyOf(compact.paidEpochDays, compact.size), Arrays.copyOf(compact.nameIds, compact.size),
+                    Arrays.copyOf(compact.names, compact.nameCount));
+            if (compact.unpackableSocialSecurityNumbers != null) {
+                copy.unpackableSocialSecurityNumbers = new HashMap<>(compact.unpackableSocialSecurityNumbers);
+            }
+            return copy;
+        }
+        copy = new CompactCustomerList(customers.size());
+        copy.addAll(customers);
+        copy.trimToSize();
+        return copy;
+    }
+
+    @Override
+    public Person get(int index) {
+        return new Person(getSocialSecurityNumber(index), getName(index), LocalDate.ofEpochDay(getPaidEpochDay(index)));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean add(Person person) {
+        add(person.getSocialSecurityNumber(), person.getName(), person.getMemberShipPaidDate().toEpochDay());
+        return true;
+    }
+
+    /**
+     * Replaces the member at a position, as when a membership is renewed.
+     *
+     * @param index The position of the member.
+     * @param person The new member.
+     * @return The member that was replaced.
+     */
+    @Override
+    public Person set(int index, Person person) {
+        Person replaced = get(index);
+        long packed = SocialSecurityNumberIndex.pack(person.getSocialSecurityNumber());
+        if (packed == SocialSecurityNumberIndex.NOT_A_SOCIAL_SECURITY_NUMBER) {
+            if (unpackableSocialSecurityNumbers == null) {
+                unpackableSocialSecurityNumbers = new HashMap<>();
+            }
+            unpackableSocialSecurityNumbers.put(index, person.getSocialSecurityNumber());
+        } else if (unpackableSocialSecurityNumbers != null) {
+            unpackableSocialSecurityNumbers.remove(index);
+        }
+        socialSecurityNumbers[index] = packed;
+        paidEpochDays[index] = Math.toIntExact(person.getMemberShipPaidDate().toEpochDay());
+        nameIds[index] = nameIdOf(person.getName());
+        return replaced;
+    }
+
+    /**
+     * Appends a member without creating a Person. The name is replaced by an equal name already in the
+     * list, so the string passed in can be garbage collected.
+     *
+     * @param socialSecurityNumber The social security number, packed if it is 10 digits.
+     * @param name The name.
+     * @param paidEpochDay The day the membership was paid, as LocalDate.toEpochDay().
+     */
+    public void add(String socialSecurityNumber, String name, long paidEpochDay) {
+        if (size == socialSecurityNumbers.length) {
+            int capacity = Math.max(size + (size >> 1), DEFAULT_CAPACITY);
+            socialSecurityNumbers = Arrays.copyOf(socialSecurityNumbers, capacity);
+            paidEpochDays = Arrays.copyOf(paidEpochDays, capacity);
+            nameIds = Arrays.copyOf(nameIds, capacity);
+        }
+        long packed = SocialSecurityNumberIndex.pack(socialSecurityNumber);
+        if (packed == SocialSecurityNumberIndex.NOT_A_SOCIAL_SECURITY_NUMBER) {
+            if (unpackableSocialSecurityNumbers == null) {
+                unpackableSocialSecurityNumbers = new HashMap<>();
+            }
+            unpackableSocialSecurityNumbers.put(size, socialSecurityNumber);
+        }
+        socialSecurityNumbers[size] = packed;
+        paidEpochDays[size] = Math.toIntExact(paidEpochDay);
+        nameIds[size] = nameIdOf(name);
+        size++;
+        modCount++;
+    }
+
+    /**
+     * Gives the social security number of a member without creating a Person.
+     *
+     * @param index The position of the member.
+     * @return The social security number as it was added.
+     */
+    public String getSocialSecurityNumber(int index) {
+        long packed = getPackedSocialSecurityNumber(index);
+        return packed == SocialSecurityNumberIndex.NOT_A_SOCIAL_SECURITY_NUMBER
+                ? unpackableSocialSecurityNumbers.get(index)
+                : SocialSecurityNumberIndex.unpack(packed);
+    }
+
+    /**
+     * Gives the social security number of a member as packed by SocialSecurityNumberIndex.pack.
+     *
+     * @param index The position of the member.
+     * @return The packed number, or NOT_A_SOCIAL_SECURITY_NUMBER if it is not 10 digits.
+     */
+    public long getPackedSocialSecurityNumber(int index) {
+        return socialSecurityNumbers[checkIndex(index)];
+    }
+
+    public String getName(int index) {
+        return names[nameIds[checkIndex(index)]];
+    }
+
+    public int getPaidEpochDay(int index) {
+        return paidEpochDays[checkIndex(index)];
+    }
+
+    /**
+     * Gives the number of distinct names, which is the number of name strings the list keeps.
+     *
+     * @return The number of distinct names.
+     */
+    public int getNameCount() {
+        return nameCount;
+    }
+
+    /**
+     * Shrinks the arrays to the number of members and drops the lookup table used to deduplicate names
+     * while adding. It is rebuilt if more members are added.
+     */
+    public void trimToSize() {
+        socialSecurityNumbers = Arrays.copyOf(socialSecurityNumbers, size);
+        paidEpochDays = Arrays.copyOf(paidEpochDays, size);
+        nameIds = Arrays.copyOf(nameIds, size);
+        names = Arrays.copyOf(names, nameCount);
+        nameIdsByName = null;
+    }
+
+    private int nameIdOf(String name) {
+        if (nameIdsByName == null) {
+            nameIdsByName = new HashMap<>();
+            for (int i = 0; i < nameCount; i++) {
+                nameIdsByName.putIfAbsent(names[i], i);
+            }
+        }
+        Integer nameId = nameIdsByName.get(name);
+        if (nameId == null) {
+            if (nameCount == names.length) {
+                names = Arrays.copyOf(names, Math.max(nameCount * 2, DEFAULT_CAPACITY));
+            }
+            nameId = nameCount;
+            names[nameCount++] = name;
+            nameIdsByName.put(name, nameId);
+        }
+        return nameId;
+    }
+
+    private int checkIndex(int index) {
+        return Objects.checkIndex(index, size);
+    }
+}
@@ -0,0 +1,107 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * The front desk console as a pipeline of three stages, so that reading the next input never waits for the
+ * answer to the last one.
+ * <p>
+ * The reader stage reads lines from the console and submits each one to the check-in service. The lookup
+ * stage runs on the service's executor: it finds the customer, queues the workout of a paying customer and
+ * builds the answer. The printer stage prints the answers in the order the inputs were typed. The workout is
+ * written afterwards by the WorkoutLog, and only a failed write is reported on the console.
+ */
+public class ConsoleCheckIn {
+
+    private static final CompletableFuture<String> END_OF_INPUT = CompletableFuture.completedFuture(null);
+
+    private final RegisterPerson rules = new RegisterPerson();
+    private final CheckInService service;
+    private final BufferedReader input;
+    private final PrintStream output;
+    private final LinkedBlockingQueue<CompletableFuture<String>> answers = new LinkedBlockingQueue<>();
+
+    /**
+     * Creates a console over a check-in service.
+     *
+     * @param service The check-in service that answers the inputs and queues the workouts.
+     * @param input The console input, one name or SSN per line.
+     * @param output The console output.
+     */
+    public ConsoleCheckIn(CheckInService service, InputStream input, PrintStream output) {
+        this.service = service;
+        this.input = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        this.output = output;
+    }
+
+    /**
+     * Reads inputs until 'quit' or the end of the input, and returns when every answer has been printed.
+     * Workouts may still be waiting to be written; closing the check-in service writes them.
+     *
+     * @throws IOException If the console cannot be read.
+     */
+    public void run() throws IOException {
+        Thread printer = new Thread(this::printAnswers, "console-printer");
+        printer.setDaemon(true);
+        printer.start();
+        output.println(RegisterPerson.PROMPT);
+
+        try {
+            String line;
+            while ((line = input.readLine()) != null && !line.trim().equalsIgnoreCase(RegisterPerson.QUIT)) {
+                answers.add(service.submit(line).thenApply(this::answer));
+            }
+        } finally {
+            answers.add(END_OF_INPUT);
+            try {
+                printer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Builds the answer to one input on the lookup stage, with suggestions for a name that is not a customer.
+     */
+    private String answer(CheckInResult result) {
+        result.getWorkoutWritten().whenComplete((written, failure) -> {
+            if (failure != null) {
+                output.println("The workout of " + result.getInput() + " could not be saved: " + failure.getMessage());
+            }
+        });
+
+        if (result.getStatus() != CheckInResult.Status.NOT_A_CUSTOMER
+                || rules.checkIfInputIsOnlyNumbers(result.getInput())) {
+            return result.getMessage();
+        }
+        String suggestions = rules.suggestCustomers(result.getInput(), service.getCustomerIndex());
+        return suggestions.isEmpty() ? result.getMessage() : result.getMessage() + "\n" + suggestions;
+    }
+
+    private void printAnswers() {
+        while (true) {
+            CompletableFuture<String> answer;
+            try {
+                answer = answers.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (answer == END_OF_INPUT) {
+                return;
+            }
+            try {
+                output.println(answer.join());
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                output.println("The check-in could not be completed");
+            }
+            output.println(RegisterPerson.PROMPT);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+public class CustomerFileLoader {
+
+    private static final int MIN_CHUNK_SIZE = 1 << 16;
+    private static final int MAX_REGION_SIZE = 1 << 30;
+    private static final int DATE_LENGTH = 10;
+
+    private final ForkJoinPool pool;
+    private final int maxRegionSize;
+    private long lastRecordsPerSecond;
+
+    public CustomerFileLoader() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public CustomerFileLoader(ForkJoinPool pool) {
+        this(pool, MAX_REGION_SIZE);
+    }
+
+    /**
+     * Creates a loader that maps files in regions of at most a number of bytes.
+     *
+     * @param pool The pool the chunks are parsed in.
+     * @param maxRegionSize The most bytes mapped in one piece. Every record must fit in a region.
+     */
+    CustomerFileLoader(ForkJoinPool pool, int maxRegionSize) {
+        this.pool = pool;
+        this.maxRegionSize = maxRegionSize;
+    }
+
+    /**
+     * Loads a customer file in the same two-line format as createCustomerListFromFile, but memory-maps it,
+     * cuts it into chunks on record boundaries and parses the chunks in parallel.
+     * Lines are scanned byte by byte, so there is no regex, split or DateTimeFormatter per record.
+     * A file larger than 1 GB is mapped in several regions, each ending on a record boundary.
+     *
+     * @param filePath The path to the file containing customer information.
+     * @return A list of Person objects in the same order as in the file.
+     * @throws IOException If the file cannot be read or has a record that does not fit in a region.
+     */
+    public ArrayList<Person> load(Path filePath) throws IOException {
+        long start = System.nanoTime();
+        ArrayList<Person> customers;
+
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int chunkSize = (int) Math.min(Math.max(MIN_CHUNK_SIZE, size / (pool.getParallelism() * 4L) + 1),
+                    maxRegionSize);
+
+            List<ChunkParser> chunks = new ArrayList<>();
+            long regionStart = 0;
+            while (regionStart < size) {
+                int regionSize = (int) Math.min(size - regionStart, maxRegionSize);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, regionSize);
+                if (regionStart + regionSize < size) {
+                    int regionEnd = lastRecordBoundary(buffer);
+                    if (regionEnd == 0) {
+                        throw new IOException("File '" + filePath + "' has a customer record longer than "
+                                + maxRegionSize + " bytes at byte " + regionStart);
+                    }
+                    buffer.limit(regionEnd);
+                }
+
+                int chunkStart = 0;
+                while (chunkStart < buffer.limit()) {
+                    int chunkEnd = findRecordBoundary(buffer, chunkStart, chunkSize);
+                    chunks.add(new ChunkParser(buffer, chunkStart, chunkEnd));
+                    chunkStart = chunkEnd;
+                }
+                regionStart += buffer.limit();
+            }
+
+            for (ChunkParser chunk : chunks) {
+                pool.execute(chunk);
+            }
+            ArrayList<ArrayList<Person>> parsedChunks = new ArrayList<>(chunks.size());
+            int total = 0;
+            for (ChunkParser chunk : chunks) {
+                ArrayList<Person> parsed = chunk.join();
+                parsedChunks.add(parsed);
+                total += parsed.size();
+            }
+            customers = new ArrayList<>(total);
+            for (ArrayList<Person> parsed : parsedChunks) {
+                customers.addAll(parsed);
+            }
+        }
+
+        long elapsedNanos = Math.max(System.nanoTime() - start, 1);
+        lastRecordsPerSecond = customers.size() * 1_000_000_000L / elapsedNanos;
+        System.out.println("Loaded " + customers.size() + " customers from '" + filePath + "' in "
+                + elapsedNanos / 1_000_000 + " ms (" + lastRecordsPerSecond + " records/sec)");
+        return customers;
+    }
+
+    public long getLastRecordsPerSecond() {
+        return lastRecordsPerSecond;
+    }
+
+    /**
+     * Parses a date in the format yyyy-MM-dd by hand. Like the SMART resolver used by parseDateFromString,
+     * a day of month up to 31 is clamped to the last valid day of the month.
+     *
+     * @param bytes The buffer holding the date.
+     * @param from The index of the first character of the date.
+     * @param to The index after the last character of the date.
+     * @return The parsed date.
+     */
+    static LocalDate parseDate(MappedByteBuffer bytes, int from, int to) {
+        if (to - from != DATE_LENGTH || bytes.get(from + 4) != '-' || bytes.get(from + 7) != '-') {
+            throw invalidDate(bytes, from, to);
+        }
+        int year = digits(bytes, from, from + 4);
+        int month = digits(bytes, from + 5, from + 7);
+        int day = digits(bytes, from + 8, from + 10);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31) {
+            throw invalidDate(bytes, from, to);
+        }
+        LocalDate firstOfMonth = LocalDate.of(year, month, 1);
+        return firstOfMonth.withDayOfMonth(Math.min(day, firstOfMonth.lengthOfMonth()));
+    }
+
+    private static int digits(MappedByteBuffer bytes, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = bytes.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static DateTimeParseException invalidDate(MappedByteBuffer bytes, int from, int to) {
+        String text = decode(bytes, from, to);
+        return new DateTimeParseException("Text '" + text + "' could not be parsed", text, 0);
+    }
+
+    /**
+     * Finds the first record boundary at or after start + chunkSize. Every record is exactly two lines,
+     * so the boundary is found by counting line breaks from the start of the chunk.
+     */
+    private static int findRecordBoundary(MappedByteBuffer buffer, int start, int chunkSize) {
+        int limit = buffer.limit();
+        int position = start;
+        int lines = 0;
+        while (position < limit) {
+            position = nextLineStart(buffer, lineEnd(buffer, position));
+            lines++;
+            if (lines % 2 == 0 && position - start >= chunkSize) {
+                break;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Finds the end of the last record that ends with a line break inside a mapped region that starts on
+     * a record boundary, so the next region can start there.
+     *
+     * @return The position after the last complete record, or 0 if the region has none.
+     */
+    private static int lastRecordBoundary(MappedByteBuffer buffer) {
+        int limit = buffer.limit();
+        int position = 0;
+        int lines = 0;
+        int boundary = 0;
+        while (true) {
+            int end = lineEnd(buffer, position);
+            // A line break that ends the region may be the '\r' of a "\r\n" cut in two.
+            if (end >= limit - 1) {
+                return boundary;
+            }
+            position = nextLineStart(buffer, end);
+            lines++;
+            if (lines % 2 == 0) {
+                boundary = position;
+            }
+        }
+    }
+
+    private static int lineEnd(MappedByteBuffer buffer, int position) {
+        int limit = buffer.limit();
+        while (position < limit) {
+            byte b = buffer.get(position);
+            if (b == '\n' || b == '\r') {
+                break;
+            }
+            position++;
+        }
+        return position;
+    }
+
+    private static int nextLineStart(MappedByteBuffer buffer, int lineEnd) {
+        int limit = buffer.limit();
+        if (lineEnd < limit && buffer.get(lineEnd) == '\r') {
+            lineEnd++;
+        }
+        if (lineEnd < limit && buffer.get(lineEnd) == '\n') {
+            lineEnd++;
+        }
+        return lineEnd;
+    }
+
+    private static int trimStart(MappedByteBuffer buffer, int from, int to) {
+        while (from < to && (buffer.get(from) & 0xff) <= ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    private static int trimEnd(MappedByteBuffer buffer, int from, int to) {
+        while (to > from && (buffer.get(to - 1) & 0xff) <= ' ') {
+            to--;
+        }
+        return to;
+    }
+
+    private static String decode(MappedByteBuffer buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static class ChunkParser extends RecursiveTask<ArrayList<Person>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final MappedByteBuffer buffer;
+        private final int start;
+        private final int end;
+
+        ChunkParser(MappedByteBuffer buffer, int start, int end) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected ArrayList<Person> compute() {
+            ArrayList<Person> customers = new ArrayList<>();
+            int position = start;
+
+            while (position < end) {
+                int firstLineEnd = lineEnd(buffer, position);
+                int secondLineStart = nextLineStart(buffer, firstLineEnd);
+                if (secondLineStart >= end && trimStart(buffer, position, firstLineEnd) == firstLineEnd) {
+                    break;
+                }
+                int secondLineEnd = lineEnd(buffer, secondLineStart);
+
+                int comma = position;
+                while (comma < firstLineEnd && buffer.get(comma) != ',') {
+                    comma++;
+                }
+                int nameEnd = comma + 1;
+                while (nameEnd < firstLineEnd && buffer.get(nameEnd) != ',') {
+                    nameEnd++;
+                }
+                if (comma >= firstLineEnd) {
+                    throw new IllegalArgumentException("Customer line without a name: '"
+                            + decode(buffer, position, firstLineEnd) + "'");
+                }
+
+                int ssnStart = trimStart(buffer, position, comma);
+                int nameStart = trimStart(buffer, comma + 1, nameEnd);
+                int dateStart = trimStart(buffer, secondLineStart, secondLineEnd);
+
+                customers.add(new Person(
+                        decode(buffer, ssnStart, trimEnd(buffer, ssnStart, comma)),
+                        decode(buffer, nameStart, trimEnd(buffer, nameStart, nameEnd)),
+                        parseDate(buffer, dateStart, trimEnd(buffer, dateStart, secondLineEnd))));
+
+                position = nextLineStart(buffer, secondLineEnd);
+            }
+            return customers;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+/**
+ * The state of the customer file a register was loaded from: its length, its last bytes and its
+ * modification time. A CustomerFileWatcher started from it applies every change made to the file since,
+ * including those made between the load and the start of the watcher.
+ */
+public class CustomerFileState {
+
+    static final int TAIL_LENGTH = 256;
+
+    private final long length;
+    private final byte[] tail;
+    private final FileTime modifiedTime;
+
+    CustomerFileState(long length, byte[] tail, FileTime modifiedTime) {
+        this.length = length;
+        this.tail = tail;
+        this.modifiedTime = modifiedTime;
+    }
+
+    /**
+     * Reads the current state of a file.
+     *
+     * @param filePath The customer file.
+     * @return The state of the file as it is now.
+     * @throws IOException If the file cannot be read.
+     */
+    public static CustomerFileState read(Path filePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            FileTime modifiedTime = Files.getLastModifiedTime(filePath);
+            long length = channel.size();
+            return new CustomerFileState(length, readBytes(channel, length - TAIL_LENGTH, length), modifiedTime);
+        }
+    }
+
+    /**
+     * Checks if two states are of the same content: the same length, last bytes and modification time.
+     *
+     * @param other The other state, or null.
+     * @return True if the file did not change from one state to the other; false otherwise.
+     */
+    public boolean isSameAs(CustomerFileState other) {
+        return other != null && length == other.length && modifiedTime.equals(other.modifiedTime)
+                && Arrays.equals(tail, other.tail);
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public byte[] getTail() {
+        return tail;
+    }
+
+    public FileTime getModifiedTime() {
+        return modifiedTime;
+    }
+
+    /**
+     * Reads the bytes of a file from one position up to another. A start before the beginning of the file
+     * reads from the beginning.
+     */
+    static byte[] readBytes(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (to - Math.max(from, 0)));
+        long position = Math.max(from, 0);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                break;
+            }
+        }
+        return buffer.array();
+    }
+}
@@ -0,0 +1,589 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Watches the customer file and publishes a new CustomerIndex when it changes.
+ * <p>
+ * When the file has only grown, which is how new payments are added, only the appended records are
+ * parsed, and CustomerIndex.withAppended indexes only them, so an append costs time in proportion to the
+ * appended records rather than the register. When the file keeps its length, as when a member is renewed by
+ * changing their date in place, the file is compared with the loaded content in blocks of 64 KB by a
+ * checksum, and only the records in the changed blocks are parsed again. If they keep their SSN and name
+ * they are applied with CustomerIndex.withRenewed. Any other edit makes the whole file load again. The new
+ * index is handed to the listener in one step, so lookups keep using the old index until the new one is
+ * complete.
+ * <p>
+ * A whole file load is only published if the file did not change while it was read and its last record is
+ * complete. A file that is still being written is read again after a short delay; a file that cannot be
+ * read, or ends in a half-written record, leaves the old register in place until the next change.
+ */
+public class CustomerFileWatcher implements Closeable {
+
+    private static final int TAIL_LENGTH = CustomerFileState.TAIL_LENGTH;
+    private static final int BLOCK_SIZE = 1 << 16;
+    private static final long SETTLE_MILLIS = 50;
+    private static final int MAX_RELOAD_ATTEMPTS = 5;
+
+    private final Path filePath;
+    private final Consumer<CustomerIndex> listener;
+    private final RegisterPerson registerPerson = new RegisterPerson();
+    private final WatchService watchService;
+    private final Thread watchThread;
+    private volatile CustomerIndex customerIndex;
+    private long loadedLength;
+    private byte[] loadedTail;
+    private FileTime loadedModifiedTime;
+    private LoadedBlocks loadedBlocks;
+
+    /**
+     * Starts watching a customer file that a register was loaded from. Changes made to the file since it was
+     * loaded are applied right away.
+     *
+     * @param filePath The customer file.
+     * @param loadedIndex The register loaded from the file.
+     * @param loadedFile The state of the file the register was read from, or null if it is not known, in
+     * which case the whole file is loaded again.
+     * @param listener Gets every new version of the register.
+     * @throws IOException If the file or its directory cannot be watched.
+     */
+    public CustomerFileWatcher(Path filePath, CustomerIndex loadedIndex, CustomerFileState loadedFile,
+                               Consumer<CustomerIndex> listener) throws IOException {
+        this.filePath = filePath.toAbsolutePath();
+        this.listener = listener;
+        this.customerIndex = loadedIndex;
+
+        watchService = FileSystems.getDefault().newWatchService();
+        this.filePath.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        if (loadedFile != null) {
+            loadedLength = loadedFile.getLength();
+            loadedTail = loadedFile.getTail();
+            loadedModifiedTime = loadedFile.getModifiedTime();
+            scanLoadedFile();
+        }
+        reload();
+        watchThread = new Thread(this::watch, "customer-file-watcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    public CustomerIndex getCustomerIndex() {
+        return customerIndex;
+    }
+
+    /**
+     * Brings the register up to date with the file and publishes the new version if anything changed.
+     * Called by the watch thread, but can also be called directly.
+     *
+     * @return True if a new version was published; false if the file had not changed, or the old version
+     * was kept because the file could not be loaded completely.
+     * @throws IOException If the file cannot be read.
+     */
+    public synchronized boolean reload() throws IOException {
+        for (int attempt = 1; attempt <= MAX_RELOAD_ATTEMPTS; attempt++) {
+            try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+                long length = channel.size();
+                FileTime modifiedTime = Files.getLastModifiedTime(filePath);
+                if (loadedBlocks != null && length == loadedLength && modifiedTime.equals(loadedModifiedTime)) {
+                    return false;
+                }
+
+                if (loadedBlocks != null && length > loadedLength && Arrays.equals(readBytes(channel,
+                        loadedLength - loadedTail.length, loadedLength), loadedTail)) {
+                    return applyAppended(channel, length, modifiedTime);
+                }
+                if (loadedBlocks != null && length == loadedLength) {
+                    Boolean published = applyChangedRecords(channel, length, modifiedTime);
+                    if (published != null) {
+                        return published;
+                    }
+                }
+
+                byte[] content = readUnchanged(channel, length, modifiedTime);
+                if (content == null) {
+                    sleepToSettle();
+                    continue;
+                }
+                return applyWholeFile(channel, content, modifiedTime);
+            }
+        }
+        System.out.println("File '" + filePath + "' kept changing while it was read and was not reloaded; "
+                + "the register is unchanged");
+        return false;
+    }
+
+    /**
+     * Parses the records appended since the last load and adds them to the register.
+     */
+    private boolean applyAppended(FileChannel channel, long length, FileTime modifiedTime) throws IOException {
+        String appended = new String(readBytes(channel, loadedLength, length), StandardCharsets.UTF_8);
+        ArrayList<Person> appendedCustomers = new ArrayList<>();
+        ArrayList<Integer> recordStarts = new ArrayList<>();
+        int consumed = parseCompleteRecords(appended, appendedCustomers, recordStarts);
+        if (consumed > 0) {
+            // Skipped records are consumed too, so they are reported only once.
+            long appendedFrom = loadedLength;
+            loadedLength += utf8Length(appended, 0, consumed);
+            loadedTail = readBytes(channel, loadedLength - TAIL_LENGTH, loadedLength);
+            loadedModifiedTime = modifiedTime;
+            loadedBlocks.checksum(channel, appendedFrom, loadedLength);
+            loadedBlocks.addRecords(byteOffsets(appended, recordStarts, appendedFrom), customerIndex.size());
+            if (channel.size() != length || !Files.getLastModifiedTime(filePath).equals(modifiedTime)) {
+                // The checksums may be of newer content than was parsed; compare the whole file next time.
+                loadedBlocks = null;
+            }
+        }
+        if (appendedCustomers.isEmpty()) {
+            return false;
+        }
+        customerIndex = customerIndex.withAppended(appendedCustomers);
+        System.out.println("Added " + appendedCustomers.size() + " customers from '" + filePath + "'");
+        listener.accept(customerIndex);
+        return true;
+    }
+
+    /**
+     * Finds the blocks of a file that kept its length that differ from the loaded content, parses only the
+     * records in them and applies the renewed ones.
+     *
+     * @return True if a new version was published, false if nothing needed to change, or null if the edit
+     * is not a renewal in place and the whole file has to be loaded again.
+     */
+    private Boolean applyChangedRecords(FileChannel channel, long length, FileTime modifiedTime)
+            throws IOException {
+        ArrayList<Integer> changedBlocks = new ArrayList<>();
+        ArrayList<Long> changedChecksums = new ArrayList<>();
+        for (int block = 0; block < loadedBlocks.size(); block++) {
+            long checksum = checksum(readBytes(channel, (long) block * BLOCK_SIZE,
+                    Math.min((long) (block + 1) * BLOCK_SIZE, length)));
+            if (checksum != loadedBlocks.getChecksum(block)) {
+                changedBlocks.add(block);
+                changedChecksums.add(checksum);
+            }
+        }
+
+        ArrayList<Integer> renewedPositions = new ArrayList<>();
+        ArrayList<Person> renewals = new ArrayList<>();
+        int run = 0;
+        while (run < changedBlocks.size()) {
+            int firstBlock = changedBlocks.get(run);
+            int lastBlock = firstBlock;
+            while (run + 1 < changedBlocks.size() && changedBlocks.get(run + 1) == lastBlock + 1) {
+                lastBlock = changedBlocks.get(++run);
+            }
+            run++;
+            if (!parseRenewals(channel, length, firstBlock, lastBlock, renewedPositions, renewals)) {
+                return null;
+            }
+        }
+        if (channel.size() != length || !Files.getLastModifiedTime(filePath).equals(modifiedTime)) {
+            return null;
+        }
+
+        for (int i = 0; i < changedBlocks.size(); i++) {
+            loadedBlocks.setChecksum(changedBlocks.get(i), changedChecksums.get(i));
+        }
+        loadedTail = readBytes(channel, length - TAIL_LENGTH, length);
+        loadedModifiedTime = modifiedTime;
+        if (renewals.isEmpty()) {
+            return false;
+        }
+        customerIndex = customerIndex.withRenewed(renewedPositions, renewals);
+        System.out.println("Renewed " + renewals.size() + " customers from '" + filePath + "'");
+        listener.accept(customerIndex);
+        return true;
+    }
+
+    /**
+     * Parses the records of a run of changed blocks, from the first record of the unchanged block before
+     * them up to the first record of the unchanged block after them, and collects those whose paid date
+     * changed.
+     *
+     * @return False if the records no longer line up with the register, or one of them changed its SSN or
+     * name.
+     */
+    private boolean parseRenewals(FileChannel channel, long length, int firstBlock, int lastBlock,
+                                  List<Integer> renewedPositions, List<Person> renewals) throws IOException {
+        long from = 0;
+        int firstPosition = 0;
+        if (firstBlock > 0) {
+            from = loadedBlocks.getFirstRecordOffset(firstBlock - 1);
+            firstPosition = loadedBlocks.getFirstRecordPosition(firstBlock - 1);
+            if (from < 0) {
+                return false;
+            }
+        }
+        long to = length;
+        int endPosition = customerIndex.size();
+        if (lastBlock + 1 < loadedBlocks.size()) {
+            to = loadedBlocks.getFirstRecordOffset(lastBlock + 1);
+            endPosition = loadedBlocks.getFirstRecordPosition(lastBlock + 1);
+            if (to < 0) {
+                return false;
+            }
+        }
+
+        String records = new String(readBytes(channel, from, to), StandardCharsets.UTF_8);
+        ArrayList<Person> parsed = new ArrayList<>();
+        int consumed = parseCompleteRecords(records, parsed, null);
+        if (parsed.size() != endPosition - firstPosition || !records.substring(consumed).isBlank()) {
+            return false;
+        }
+        for (int i = 0; i < parsed.size(); i++) {
+            Person loaded = customerIndex.get(firstPosition + i);
+            Person p = parsed.get(i);
+            if (!p.getSocialSecurityNumber().equals(loaded.getSocialSecurityNumber())
+                    || !p.getName().equals(loaded.getName())) {
+                return false;
+            }
+            if (!p.getMemberShipPaidDate().equals(loaded.getMemberShipPaidDate())) {
+                renewedPositions.add(firstPosition + i);
+                renewals.add(p);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses the whole file into a new register, if it ends in a complete record.
+     */
+    private boolean applyWholeFile(FileChannel channel, byte[] content, FileTime modifiedTime) throws IOException {
+        String text = new String(content, StandardCharsets.UTF_8);
+        List<Person> customers = customerIndex.isCompact() ? new CompactCustomerList() : new ArrayList<>();
+        ArrayList<Integer> recordStarts = new ArrayList<>();
+        int consumed = parseCompleteRecords(text, customers, recordStarts);
+        if (!text.substring(consumed).isBlank()) {
+            System.out.println("File '" + filePath + "' ends in an incomplete customer and was not "
+                    + "reloaded; the register is unchanged");
+            return false;
+        }
+        if (customers instanceof CompactCustomerList compact) {
+            compact.trimToSize();
+        }
+        loadedLength = content.length;
+        loadedTail = readBytes(channel, loadedLength - TAIL_LENGTH, loadedLength);
+        loadedModifiedTime = modifiedTime;
+        loadedBlocks = new LoadedBlocks();
+        loadedBlocks.checksum(content);
+        loadedBlocks.addRecords(byteOffsets(text, recordStarts, 0), 0);
+        customerIndex = new CustomerIndex(customers);
+        System.out.println("Reloaded " + customers.size() + " customers from '" + filePath + "'");
+        listener.accept(customerIndex);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        try {
+            watchThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean customerFileChanged = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    customerFileChanged |= filePath.getFileName().equals(event.context());
+                }
+                key.reset();
+
+                if (customerFileChanged) {
+                    Thread.sleep(SETTLE_MILLIS);
+                    try {
+                        reload();
+                    } catch (IOException | RuntimeException e) {
+                        e.printStackTrace();
+                        System.out.println("Error while reloading file '" + filePath + "'");
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // The watcher was closed.
+        }
+    }
+
+    /**
+     * Parses the records in text appended to the customer file. A last record that has not been
+     * completely written yet is left for the next reload. A malformed record that is followed by more
+     * text, without a comma between SSN and name or with a date that cannot be read, is skipped and
+     * reported, so it does not hold up the records after it.
+     *
+     * @param recordStarts Gets the position in the text of every record that was added, or null.
+     * @return The number of characters of the text that were consumed.
+     */
+    private int parseCompleteRecords(String appended, List<Person> customers, List<Integer> recordStarts) {
+        int position = 0;
+        while (position < appended.length()) {
+            int recordStart = position;
+            while (recordStart < appended.length() && (appended.charAt(recordStart) == '\n'
+                    || appended.charAt(recordStart) == '\r')) {
+                recordStart++;
+            }
+            int firstLineEnd = appended.indexOf('\n', recordStart);
+            if (firstLineEnd < 0) {
+                break;
+            }
+            int secondLineEnd = appended.indexOf('\n', firstLineEnd + 1);
+            int recordEnd = secondLineEnd < 0 ? appended.length() : secondLineEnd;
+
+            String[] customerSocialSecurityNumberAndName = appended.substring(recordStart, firstLineEnd).split(",");
+            String memberShipPaidDate = appended.substring(firstLineEnd + 1, recordEnd).trim();
+            boolean isLastRecord = secondLineEnd < 0;
+            if (customerSocialSecurityNumberAndName.length < 2) {
+                if (isLastRecord) {
+                    break;
+                }
+                skipRecord(appended.substring(recordStart, recordEnd));
+                position = recordEnd;
+                continue;
+            }
+            try {
+                customers.add(registerPerson.createCustomer(new String[]{
+                        customerSocialSecurityNumberAndName[0].trim(),
+                        customerSocialSecurityNumberAndName[1].trim(),
+                        memberShipPaidDate}));
+                if (recordStarts != null) {
+                    recordStarts.add(recordStart);
+                }
+            } catch (DateTimeParseException e) {
+                if (isLastRecord) {
+                    // The date may still be being written.
+                    break;
+                }
+                skipRecord(appended.substring(recordStart, recordEnd));
+            }
+            position = recordEnd;
+        }
+        return position;
+    }
+
+    private void skipRecord(String record) {
+        System.out.println("Skipped malformed customer '" + record.replace('\n', ' ').trim() + "' in file '"
+                + filePath + "'");
+    }
+
+    /**
+     * Reads the whole file, checking afterwards that it was not changed during the read.
+     *
+     * @return The content, or null if the size or modification time changed while it was read.
+     */
+    private byte[] readUnchanged(FileChannel channel, long length, FileTime modifiedTime) throws IOException {
+        byte[] content = readBytes(channel, 0, length);
+        if (channel.size() != length || !Files.getLastModifiedTime(filePath).equals(modifiedTime)) {
+            return null;
+        }
+        return content;
+    }
+
+    private void sleepToSettle() throws IOException {
+        try {
+            Thread.sleep(SETTLE_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for file '" + filePath + "' to settle", e);
+        }
+    }
+
+    /**
+     * Reads the checksums and record starts of the blocks of the file the register was loaded from. They
+     * are only kept if the file is still as it was loaded, or has only grown since, and the loaded part has
+     * one record per customer; otherwise the whole file is loaded again.
+     */
+    private void scanLoadedFile() throws IOException {
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            CustomerFileState current = CustomerFileState.read(filePath);
+            boolean unchanged = current.getLength() == loadedLength
+                    && current.getModifiedTime().equals(loadedModifiedTime);
+            boolean appended = current.getLength() > loadedLength && Arrays.equals(readBytes(channel,
+                    loadedLength - loadedTail.length, loadedLength), loadedTail);
+            if (!unchanged && !appended) {
+                return;
+            }
+            LoadedBlocks blocks = new LoadedBlocks();
+            int records = blocks.scan(channel, loadedLength);
+            if (records == customerIndex.size() && current.isSameAs(CustomerFileState.read(filePath))) {
+                loadedBlocks = blocks;
+            }
+        }
+    }
+
+    /**
+     * Converts positions of records in text read from the file to byte offsets in the file.
+     */
+    private static long[] byteOffsets(String text, List<Integer> recordStarts, long textOffset) {
+        long[] offsets = new long[recordStarts.size()];
+        long offset = textOffset;
+        int character = 0;
+        for (int i = 0; i < offsets.length; i++) {
+            offset += utf8Length(text, character, recordStarts.get(i));
+            character = recordStarts.get(i);
+            offsets[i] = offset;
+        }
+        return offsets;
+    }
+
+    private static long utf8Length(String text, int from, int to) {
+        long length = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static long checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+
+    private static byte[] readBytes(FileChannel channel, long from, long to) throws IOException {
+        return CustomerFileState.readBytes(channel, from, to);
+    }
+
+    /**
+     * The checksum of every 64 KB block of the loaded file, and the offset and register position of the
+     * first record that starts in each block, or -1 if no record starts in it.
+     */
+    private static class LoadedBlocks {
+
+        private long[] checksums = new long[0];
+        private long[] firstRecordOffsets = new long[0];
+        private int[] firstRecordPositions = new int[0];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        long getChecksum(int block) {
+            return checksums[block];
+        }
+
+        void setChecksum(int block, long checksum) {
+            checksums[block] = checksum;
+        }
+
+        long getFirstRecordOffset(int block) {
+            return firstRecordOffsets[block];
+        }
+
+        int getFirstRecordPosition(int block) {
+            return firstRecordPositions[block];
+        }
+
+        /**
+         * Computes the checksums of the blocks of content read from the start of the file.
+         */
+        void checksum(byte[] content) {
+            resize((content.length + BLOCK_SIZE - 1) / BLOCK_SIZE);
+            CRC32 crc = new CRC32();
+            for (int block = 0; block < size; block++) {
+                crc.reset();
+                int start = block * BLOCK_SIZE;
+                crc.update(content, start, Math.min(BLOCK_SIZE, content.length - start));
+                checksums[block] = crc.getValue();
+            }
+        }
+
+        /**
+         * Computes the checksums of the blocks from the one holding a position up to the end of the loaded file.
+         */
+        void checksum(FileChannel channel, long from, long to) throws IOException {
+            resize((int) ((to + BLOCK_SIZE - 1) / BLOCK_SIZE));
+            for (int block = (int) (from / BLOCK_SIZE); block < size; block++) {
+                checksums[block] = CustomerFileWatcher.checksum(readBytes(channel, (long) block * BLOCK_SIZE,
+                        Math.min((long) (block + 1) * BLOCK_SIZE, to)));
+            }
+        }
+
+        /**
+         * Records where records start.
+         *
+         * @param offsets The byte offsets of the records, in file order.
+         * @param firstPosition The register position of the first record.
+         */
+        void addRecords(long[] offsets, int firstPosition) {
+            for (int i = 0; i < offsets.length; i++) {
+                int block = (int) (offsets[i] / BLOCK_SIZE);
+                if (block < size && firstRecordOffsets[block] < 0) {
+                    firstRecordOffsets[block] = offsets[i];
+                    firstRecordPositions[block] = firstPosition + i;
+                }
+            }
+        }
+
+        /**
+         * Reads the loaded file and records its checksums and record starts. A record starts at the first
+         * character after line breaks, like in parseCompleteRecords, and takes two lines.
+         *
+         * @return The number of records in the file.
+         */
+        int scan(FileChannel channel, long length) throws IOException {
+            resize((int) ((length + BLOCK_SIZE - 1) / BLOCK_SIZE));
+            int records = 0;
+            int linesLeft = 0;
+            for (int block = 0; block < size; block++) {
+                long blockStart = (long) block * BLOCK_SIZE;
+                byte[] bytes = readBytes(channel, blockStart, Math.min(blockStart + BLOCK_SIZE, length));
+                checksums[block] = CustomerFileWatcher.checksum(bytes);
+                for (int i = 0; i < bytes.length; i++) {
+                    if (linesLeft == 0 && bytes[i] != '\n' && bytes[i] != '\r') {
+                        if (firstRecordOffsets[block] < 0) {
+                            firstRecordOffsets[block] = blockStart + i;
+                            firstRecordPositions[block] = records;
+                        }
+                        records++;
+                        linesLeft = 2;
+                    }
+                    if (bytes[i] == '\n' && linesLeft > 0) {
+                        linesLeft--;
+                    }
+                }
+            }
+            return records;
+        }
+
+        private void resize(int blocks) {
+            checksums = Arrays.copyOf(checksums, blocks);
+            firstRecordOffsets = Arrays.copyOf(firstRecordOffsets, blocks);
+            firstRecordPositions = Arrays.copyOf(firstRecordPositions, blocks);
+            for (int block = size; block < blocks; block++) {
+                firstRecordOffsets[block] = -1;
+            }
+            size = blocks;
+        }
+    }
+}
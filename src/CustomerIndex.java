@@ -0,0 +1,526 @@
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.stream.LongStream;
+
+public class CustomerIndex {
+
+    private static final double FILTER_FALSE_POSITIVE_RATE = Double.parseDouble(
+            System.getProperty("gym.customerFilterFalsePositiveRate", "0.01"));
+    private static final int APPENDED_REBUILD_RATIO = 8;
+
+    private final AppendedCustomers appended;
+    private final RenewedCustomers renewed;
+    private final int indexedSize;
+    private final List<Person> allCustomers;
+    private final double filterFalsePositiveRate;
+    private final List<Person> customers;
+    private final CompactCustomerList compactCustomers;
+    private final SocialSecurityNumberIndex positionsBySocialSecurityNumber;
+    private final HashMap<String, Integer> positionsByUnpackableSocialSecurityNumber;
+    private final HashMap<String, int[]> positionsByName;
+    private final MembershipCutoff membershipCutoff;
+    private final MembershipTimeline membershipTimeline;
+    private final BloomFilter customerFilter;
+    private final CheckInMetrics metrics = CheckInMetrics.global();
+    private volatile NameSearchIndex nameSearchIndex;
+    private boolean hasNumericNames;
+
+    /**
+     * Builds an index over a list of customers so that a name or social security number
+     * can be resolved with a single hash probe instead of scanning the whole list.
+     *
+     * @param customers The customers to index, usually the list from createCustomerListFromFile.
+     */
+    public CustomerIndex(List<Person> customers) {
+        this(customers, MembershipCutoff.systemDefault());
+    }
+
+    /**
+     * Builds an index over a list of customers, with paying status following the date of a cutoff.
+     * A CompactCustomerList is kept as it is, not copied, and is indexed without creating a Person per
+     * customer; it must not be appended to afterwards.
+     *
+     * @param customers The customers to index.
+     * @param membershipCutoff Tells which day it is.
+     */
+    public CustomerIndex(List<Person> customers, MembershipCutoff membershipCutoff) {
+        this(customers, membershipCutoff, FILTER_FALSE_POSITIVE_RATE);
+    }
+
+    /**
+     * Builds an index with a Bloom filter in front of it, so most inputs that are not customers are rejected
+     * without a hash map lookup. The default rate is 1%, set with -Dgym.customerFilterFalsePositiveRate.
+     *
+     * @param customers The customers to index.
+     * @param membershipCutoff Tells which day it is.
+     * @param filterFalsePositiveRate The share of non-customers the filter lets through to the index,
+     * between 0 and 1; 0 turns the filter off.
+     */
+    public CustomerIndex(List<Person> customers, MembershipCutoff membershipCutoff, double filterFalsePositiveRate) {
+        this.appended = null;
+        this.renewed = null;
+        this.indexedSize = customers.size();
+        this.filterFalsePositiveRate = filterFalsePositiveRate;
+        this.membershipCutoff = membershipCutoff;
+        this.compactCustomers = customers instanceof CompactCustomerList compact ? compact : null;
+        this.customers = Collections.unmodifiableList(
+                compactCustomers != null ? compactCustomers : new ArrayList<>(customers));
+        this.allCustomers = this.customers;
+        this.positionsBySocialSecurityNumber = new SocialSecurityNumberIndex(customers.size());
+        this.positionsByUnpackableSocialSecurityNumber = new HashMap<>();
+        this.positionsByName = new HashMap<>(capacityFor(customers.size()));
+        this.customerFilter = filterFalsePositiveRate > 0
+                ? new BloomFilter(customers.size() * 2, filterFalsePositiveRate) : null;
+        int[] paidEpochDays = new int[this.customers.size()];
+
+        for (int i = 0; i < this.customers.size(); i++) {
+            String name;
+            long packed;
+            int paidEpochDay;
+            if (compactCustomers != null) {
+                // Read field by field, so indexing a compact list does not create a Person per customer.
+                name = compactCustomers.getName(i);
+                packed = compactCustomers.getPackedSocialSecurityNumber(i);
+                paidEpochDay = compactCustomers.getPaidEpochDay(i);
+            } else {
+                Person p = this.customers.get(i);
+                name = p.getName();
+                packed = SocialSecurityNumberIndex.pack(p.getSocialSecurityNumber());
+                paidEpochDay = (int) p.getMemberShipPaidDate().toEpochDay();
+            }
+            paidEpochDays[i] = paidEpochDay;
+            String key = nameKey(name);
+            if (packed == SocialSecurityNumberIndex.NOT_A_SOCIAL_SECURITY_NUMBER) {
+                String socialSecurityNumber = this.customers.get(i).getSocialSecurityNumber();
+                positionsByUnpackableSocialSecurityNumber.putIfAbsent(socialSecurityNumber, i);
+                if (customerFilter != null) {
+                    customerFilter.add(socialSecurityNumber);
+                }
+            } else {
+                positionsBySocialSecurityNumber.add(packed, i, paidEpochDay);
+                if (customerFilter != null) {
+                    customerFilter.add(packed);
+                }
+            }
+            if (customerFilter != null) {
+                customerFilter.add(key);
+            }
+            hasNumericNames |= SocialSecurityNumberIndex.pack(name)
+                    != SocialSecurityNumberIndex.NOT_A_SOCIAL_SECURITY_NUMBER;
+            positionsByName.merge(key, new int[]{i}, CustomerIndex::appendPositions);
+        }
+        this.membershipTimeline = new MembershipTimeline(this.customers, paidEpochDays,
+                membershipCutoff.getTodayEpochDay());
+    }
+
+    /**
+     * Gives a version of an indexed register with customers appended after it and customers renewed in it.
+     * The indexes of the register are shared, not copied, and positions of the appended customers start at
+     * its size.
+     */
+    private CustomerIndex(CustomerIndex indexed, AppendedCustomers appended, RenewedCustomers renewed) {
+        this.appended = appended;
+        this.renewed = renewed;
+        this.indexedSize = indexed.indexedSize;
+        this.filterFalsePositiveRate = indexed.filterFalsePositiveRate;
+        this.membershipCutoff = indexed.membershipCutoff;
+        this.compactCustomers = indexed.compactCustomers;
+        this.customers = indexed.customers;
+        this.allCustomers = new VersionList();
+        this.positionsBySocialSecurityNumber = indexed.positionsBySocialSecurityNumber;
+        this.positionsByUnpackableSocialSecurityNumber = indexed.positionsByUnpackableSocialSecurityNumber;
+        this.positionsByName = indexed.positionsByName;
+        this.customerFilter = indexed.customerFilter;
+        this.membershipTimeline = indexed.membershipTimeline;
+        this.hasNumericNames = indexed.hasNumericNames || appended != null && appended.hasNumericNames();
+    }
+
+    /**
+     * Finds the customer matching a name (case-insensitive) or a social security number.
+     * If several customers share the same name, the first one in file order is returned,
+     * which is the same person the old linear scan would have found.
+     *
+     * @param nameOrSocialSecurityNumber The name or social security number to look up.
+     * @return The matching Person, or null if the input does not belong to a customer.
+     */
+    public Person findCustomer(String nameOrSocialSecurityNumber) {
+        int position = findPosition(nameOrSocialSecurityNumber);
+        return position < 0 ? null : get(position);
+    }
+
+    /**
+     * Gives a new version of the register with customers added at the end, as when they are appended to
+     * the customer file. This index is not changed and can still be used.
+     * <p>
+     * Only the added customers are indexed, in an AppendedCustomers that grows with every append, so an
+     * append costs time in proportion to the added customers. The new version looks a customer up in the
+     * indexed register first and then among the appended ones. Once the appended customers are more than
+     * an eighth of the register, the whole register is indexed again instead, which spreads over the appends
+     * to a constant cost per customer.
+     *
+     * @param added The customers to add, in file order.
+     * @return The new version, or this index if there is nothing to add.
+     */
+    public CustomerIndex withAppended(List<Person> added) {
+        if (added.isEmpty()) {
+            return this;
+        }
+        if (needsRebuild(added.size())) {
+            List<Person> all = copyCustomers();
+            all.addAll(added);
+            return rebuild(all);
+        }
+        AppendedCustomers current = appended != null ? appended
+                : new AppendedCustomers(indexedSize / APPENDED_REBUILD_RATIO + 1, filterFalsePositiveRate);
+        return new CustomerIndex(this, current.append(added), renewed);
+    }
+
+    /**
+     * Gives a new version of the register with some memberships renewed, as when a paid date is changed in
+     * place in the customer file. This index is not changed and can still be used.
+     * <p>
+     * The renewed customers keep their SSN and name, so the indexes stay valid and only the renewed customers
+     * are recorded, in a RenewedCustomers that grows with every renewal. Like appended customers, once they
+     * are more than an eighth of the register the whole register is indexed again instead.
+     *
+     * @param positions The positions of the renewed customers.
+     * @param renewals The renewed customers, with the same SSN and name as at their position and a new paid date.
+     * @return The new version, or this index if there is nothing to renew.
+     */
+    public CustomerIndex withRenewed(List<Integer> positions, List<Person> renewals) {
+        if (renewals.isEmpty()) {
+            return this;
+        }
+        if (needsRebuild(renewals.size())) {
+            List<Person> all = copyCustomers();
+            for (int i = 0; i < renewals.size(); i++) {
+                all.set(positions.get(i), renewals.get(i));
+            }
+            return rebuild(all);
+        }
+        RenewedCustomers current = renewed != null ? renewed : new RenewedCustomers();
+        return new CustomerIndex(this, appended, current.renew(positions, renewals));
+    }
+
+    private boolean needsRebuild(int changes) {
+        long changed = (long) (appended == null ? 0 : appended.size()) + (renewed == null ? 0 : renewed.size())
+                + changes;
+        return changed * APPENDED_REBUILD_RATIO > indexedSize;
+    }
+
+    private CustomerIndex rebuild(List<Person> all) {
+        if (all instanceof CompactCustomerList compact) {
+            compact.trimToSize();
+        }
+        return new CustomerIndex(all, membershipCutoff, filterFalsePositiveRate);
+    }
+
+    /**
+     * Finds the position in the customer list of the customer matching a name or social security number.
+     * If both a name and an SSN match, the customer earliest in file order wins, mirroring the old scan.
+     * A 10 digit input is resolved through the primitive SSN index without allocating. Inputs the Bloom filter
+     * has never seen are rejected before any index is read.
+     *
+     * @param nameOrSocialSecurityNumber The name or social security number to look up.
+     * @return The position of the customer, or -1 if there is no match.
+     */
+    public int findPosition(String nameOrSocialSecurityNumber) {
+        long packed = SocialSecurityNumberIndex.pack(nameOrSocialSecurityNumber);
+        boolean isOnlySocialSecurityNumber = packed != SocialSecurityNumberIndex.NOT_A_SOCIAL_SECURITY_NUMBER
+                && !hasNumericNames;
+        String key = isOnlySocialSecurityNumber ? null : nameKey(nameOrSocialSecurityNumber);
+        if (customerFilter == null) {
+            return findIndexedPosition(nameOrSocialSecurityNumber, packed, key);
+        }
+
+        if (!mightBeCustomer(nameOrSocialSecurityNumber, packed, key)) {
+            metrics.filterRejected.increment();
+            return -1;
+        }
+        int position = findIndexedPosition(nameOrSocialSecurityNumber, packed, key);
+        metrics.filterPassed.increment();
+        if (position < 0) {
+            metrics.filterFalsePositives.increment();
+        }
+        return position;
+    }
+
+    /**
+     * @param key The name key of the input, or null if the input can only be a social security number.
+     */
+    private boolean mightBeCustomer(String nameOrSocialSecurityNumber, long packed, String key) {
+        if (appended != null && appended.mightBeCustomer(nameOrSocialSecurityNumber, packed, key)) {
+            return true;
+        }
+        if (packed != SocialSecurityNumberIndex.NOT_A_SOCIAL_SECURITY_NUMBER && customerFilter.mightContain(packed)) {
+            return true;
+        }
+        return key != null && (customerFilter.mightContain(key) || !positionsByUnpackableSocialSecurityNumber.isEmpty()
+                && customerFilter.mightContain(nameOrSocialSecurityNumber));
+    }
+
+    /**
+     * Looks in the indexed register first, since its customers come before the appended ones in file order.
+     */
+    private int findIndexedPosition(String nameOrSocialSecurityNumber, long packed, String key) {
+        int position = findOwnPosition(nameOrSocialSecurityNumber, packed, key);
+        if (position >= 0 || appended == null) {
+            return position;
+        }
+        position = appended.findPosition(nameOrSocialSecurityNumber, packed, key);
+        return position < 0 ? -1 : position + indexedSize;
+    }
+
+    private int findOwnPosition(String nameOrSocialSecurityNumber, long packed, String key) {
+        if (key == null) {
+            return positionsBySocialSecurityNumber.findPosition(packed);
+        }
+
+        int[] namePositions = positionsByName.get(key);
+        int ssnPosition = packed != SocialSecurityNumberIndex.NOT_A_SOCIAL_SECURITY_NUMBER
+                ? positionsBySocialSecurityNumber.findPosition(packed)
+                : positionsByUnpackableSocialSecurityNumber.getOrDefault(nameOrSocialSecurityNumber, -1);
+
+        if (namePositions == null) {
+            return ssnPosition;
+        } else if (ssnPosition < 0) {
+            return namePositions[0];
+        }
+        return Math.min(namePositions[0], ssnPosition);
+    }
+
+    /**
+     * Finds the membership paid date of a customer by social security number, without creating a Person.
+     *
+     * @param socialSecurityNumber The 10 digit social security number.
+     * @return The paid date as an epoch day, or Integer.MIN_VALUE if the SSN is not indexed.
+     */
+    public int findPaidEpochDay(String socialSecurityNumber) {
+        long packed = SocialSecurityNumberIndex.pack(socialSecurityNumber);
+        if (renewed != null && packed != SocialSecurityNumberIndex.NOT_A_SOCIAL_SECURITY_NUMBER) {
+            int position = findIndexedPosition(socialSecurityNumber, packed, null);
+            Person renewal = position < 0 ? null : renewed.get(position);
+            if (renewal != null) {
+                return (int) renewal.getMemberShipPaidDate().toEpochDay();
+            }
+        }
+        int paidEpochDay = positionsBySocialSecurityNumber.findPaidEpochDay(packed);
+        if (paidEpochDay != Integer.MIN_VALUE || appended == null) {
+            return paidEpochDay;
+        }
+        return appended.findPaidEpochDay(packed);
+    }
+
+    /**
+     * Checks if the customer at a position has paid their membership in the last year.
+     * Gives the same answer as RegisterPerson.checkIfPersonIsPayingCustomer, but reads a precomputed bit.
+     *
+     * @param position The position of the customer, as returned by findPosition.
+     * @return True if the customer is a paying customer; false otherwise.
+     */
+    public boolean isPayingCustomer(int position) {
+        if (renewed != null) {
+            int expiryDay = renewed.findExpiryDay(position);
+            if (expiryDay != Integer.MIN_VALUE) {
+                return expiryDay > membershipCutoff.getTodayEpochDay();
+            }
+        }
+        if (position >= indexedSize) {
+            return appended.isPaying(position - indexedSize, membershipCutoff.getTodayEpochDay());
+        }
+        return membershipTimeline.isPaying(position, membershipCutoff.getTodayEpochDay());
+    }
+
+    /**
+     * Returns the customers whose membership expires from one date up to and including another.
+     *
+     * @param from The first expiry date to include.
+     * @param to The last expiry date to include.
+     * @return The customers in order of expiry.
+     */
+    public List<Person> findExpiringBetween(LocalDate from, LocalDate to) {
+        if (appended == null && renewed == null) {
+            return membershipTimeline.findExpiringBetween(from, to);
+        }
+        long firstDay = from.toEpochDay();
+        long lastDay = to.toEpochDay();
+        LongStream.Builder expiring = LongStream.builder();
+        for (long expiryAndPosition : membershipTimeline.findPositionsExpiringBetween(firstDay, lastDay)) {
+            if (!isRenewed((int) expiryAndPosition)) {
+                expiring.add(expiryAndPosition);
+            }
+        }
+        if (appended != null) {
+            for (long expiryAndPosition : appended.findExpiringBetween(firstDay, lastDay)) {
+                if (!isRenewed((int) expiryAndPosition + indexedSize)) {
+                    expiring.add(expiryAndPosition + indexedSize);
+                }
+            }
+        }
+        if (renewed != null) {
+            for (long expiryAndPosition : renewed.findExpiringBetween(firstDay, lastDay)) {
+                expiring.add(expiryAndPosition);
+            }
+        }
+        // Sorted by expiry, and by position on the same day.
+        long[] sorted = expiring.build().sorted().toArray();
+        ArrayList<Person> customersExpiring = new ArrayList<>(sorted.length);
+        for (long expiryAndPosition : sorted) {
+            customersExpiring.add(get((int) expiryAndPosition));
+        }
+        return customersExpiring;
+    }
+
+    /**
+     * Returns every customer registered under a name, in file order.
+     *
+     * @param name The name to look up (case-insensitive).
+     * @return A list of customers with that name; empty if there are none.
+     */
+    public List<Person> findAllByName(String name) {
+        String key = nameKey(name);
+        int[] positions = positionsByName.get(key);
+        ArrayList<Person> matches = new ArrayList<>(positions == null ? 0 : positions.length);
+        if (positions != null) {
+            for (int position : positions) {
+                matches.add(get(position));
+            }
+        }
+        if (appended != null) {
+            for (int position : appended.findPositionsByName(key)) {
+                matches.add(get(position + indexedSize));
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Checks if more than one customer is registered under a name.
+     *
+     * @param name The name to check (case-insensitive).
+     * @return True if the name is shared by several customers; false otherwise.
+     */
+    public boolean hasDuplicateName(String name) {
+        return countByName(nameKey(name)) > 1;
+    }
+
+    /**
+     * Returns the prefix and fuzzy name search over this register. It is built on first use, since the
+     * plain check-in path does not need it.
+     *
+     * @return The name search index.
+     */
+    public NameSearchIndex getNameSearchIndex() {
+        NameSearchIndex index = nameSearchIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = nameSearchIndex;
+                if (index == null) {
+                    index = new NameSearchIndex(allCustomers);
+                    nameSearchIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Gives the day paying status is decided for, from the cutoff the index was built with.
+     *
+     * @return The current day, as LocalDate.toEpochDay().
+     */
+    public long getTodayEpochDay() {
+        return membershipCutoff.getTodayEpochDay();
+    }
+
+    public Person get(int position) {
+        Person renewal = renewed != null ? renewed.get(position) : null;
+        if (renewal != null) {
+            return renewal;
+        }
+        return position < indexedSize ? customers.get(position) : appended.get(position - indexedSize);
+    }
+
+    public List<Person> getCustomers() {
+        return allCustomers;
+    }
+
+    /**
+     * Copies the customers into a new list that more customers can be added to. The copy is a
+     * CompactCustomerList if this register was built from one.
+     *
+     * @return The copy, in register order.
+     */
+    public List<Person> copyCustomers() {
+        List<Person> copy = compactCustomers != null
+                ? CompactCustomerList.copyOf(compactCustomers) : new ArrayList<>(customers);
+        if (appended != null) {
+            copy.addAll(appended.asList());
+        }
+        if (renewed != null) {
+            renewed.applyTo(copy);
+        }
+        return copy;
+    }
+
+    /**
+     * Checks if the register keeps its customers in a CompactCustomerList.
+     *
+     * @return True if the customers are kept compact; false otherwise.
+     */
+    public boolean isCompact() {
+        return compactCustomers != null;
+    }
+
+    public int size() {
+        return indexedSize + (appended == null ? 0 : appended.size());
+    }
+
+    static String nameKey(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private int countByName(String key) {
+        int[] positions = positionsByName.get(key);
+        return (positions == null ? 0 : positions.length) + (appended == null ? 0 : appended.countByName(key));
+    }
+
+    private boolean isRenewed(int position) {
+        return renewed != null && renewed.get(position) != null;
+    }
+
+    private static int[] appendPositions(int[] existing, int[] added) {
+        int[] merged = new int[existing.length + added.length];
+        System.arraycopy(existing, 0, merged, 0, existing.length);
+        System.arraycopy(added, 0, merged, existing.length, added.length);
+        return merged;
+    }
+
+    private static int capacityFor(int size) {
+        return (int) (size / 0.75f) + 1;
+    }
+
+    /**
+     * The customers of this version: those of the indexed register followed by the appended ones, with the
+     * renewals applied, without copying any of them.
+     */
+    private class VersionList extends AbstractList<Person> implements RandomAccess {
+
+        @Override
+        public Person get(int index) {
+            return CustomerIndex.this.get(Objects.checkIndex(index, size()));
+        }
+
+        @Override
+        public int size() {
+            return CustomerIndex.this.size();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * A versioned binary copy of the customer register that can be memory-mapped on start-up instead of
+ * parsing the text file.
+ * <p>
+ * Layout (big-endian): a header with magic, version, size and modification time of the text file it was
+ * made from, record count and name count; one 16 byte record per customer (SSN as a long, paid date as an
+ * epoch day, name id); a string table of name offsets followed by UTF-8 name bytes; a CRC32 of everything
+ * before it.
+ */
+public class CustomerSnapshot {
+
+    private static final int MAGIC = 0x47594D53;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 4 + 4;
+    private static final int RECORD_SIZE = 8 + 4 + 4;
+    private static final int CHECKSUM_SIZE = 8;
+
+    private final Path snapshotPath;
+
+    public CustomerSnapshot(Path snapshotPath) {
+        this.snapshotPath = snapshotPath;
+    }
+
+    /**
+     * Reads the customers from the snapshot if it exists, is intact and was made from the current
+     * version of the text file.
+     *
+     * @param sourcePath The text file the snapshot was made from.
+     * @return The customers in file order, or null if the snapshot is missing, stale or corrupt.
+     */
+    public ArrayList<Person> read(Path sourcePath) {
+        CompactCustomerList customers = readCompact(sourcePath);
+        return customers == null ? null : new ArrayList<>(customers);
+    }
+
+    /**
+     * Reads the customers from the snapshot into a compact list, without creating a Person per customer.
+     *
+     * @param sourcePath The text file the snapshot was made from.
+     * @return The customers in file order, or null if the snapshot is missing, stale or corrupt.
+     */
+    public CompactCustomerList readCompact(Path sourcePath) {
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + CHECKSUM_SIZE || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || buffer.getLong(8) != Files.size(sourcePath)
+                    || buffer.getLong(16) != Files.getLastModifiedTime(sourcePath).toMillis()) {
+                return null;
+            }
+
+            int checksumPosition = (int) size - CHECKSUM_SIZE;
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(0, checksumPosition));
+            if (crc.getValue() != buffer.getLong(checksumPosition)) {
+                System.out.println("Snapshot '" + snapshotPath + "' is corrupt and will be rebuilt");
+                return null;
+            }
+
+            int count = buffer.getInt(24);
+            int nameCount = buffer.getInt(28);
+            int nameTablePosition = HEADER_SIZE + count * RECORD_SIZE;
+            int nameBytesPosition = nameTablePosition + (nameCount + 1) * 4;
+
+            String[] names = new String[nameCount];
+            for (int i = 0; i < nameCount; i++) {
+                int from = buffer.getInt(nameTablePosition + i * 4);
+                int to = buffer.getInt(nameTablePosition + (i + 1) * 4);
+                byte[] bytes = new byte[to - from];
+                buffer.get(nameBytesPosition + from, bytes);
+                names[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            long[] socialSecurityNumbers = new long[count];
+            int[] paidEpochDays = new int[count];
+            int[] nameIds = new int[count];
+            for (int i = 0; i < count; i++) {
+                int record = HEADER_SIZE + i * RECORD_SIZE;
+                socialSecurityNumbers[i] = buffer.getLong(record);
+                paidEpochDays[i] = buffer.getInt(record + 8);
+                nameIds[i] = Objects.checkIndex(buffer.getInt(record + 12), nameCount);
+            }
+            return new CompactCustomerList(socialSecurityNumbers, paidEpochDays, nameIds, names);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Snapshot '" + snapshotPath + "' could not be read and will be rebuilt");
+            return null;
+        }
+    }
+
+    /**
+     * Writes a snapshot of the customers loaded from a text file. The file is written next to the
+     * snapshot and moved into place, so a reader never sees a half-written snapshot.
+     *
+     * @param sourcePath The text file the customers were loaded from.
+     * @param customers The customers to write.
+     * @return True if the snapshot was written; false if a customer has an SSN that is not 10 digits
+     * or the file could not be written.
+     */
+    public boolean write(Path sourcePath, List<Person> customers) {
+        HashMap<String, Integer> nameIds = new HashMap<>();
+        ArrayList<byte[]> nameBytes = new ArrayList<>();
+        int nameBytesLength = 0;
+        ByteBuffer records = ByteBuffer.allocate(customers.size() * RECORD_SIZE);
+
+        for (Person p : customers) {
+            long ssn = SocialSecurityNumberIndex.pack(p.getSocialSecurityNumber());
+            if (ssn == SocialSecurityNumberIndex.NOT_A_SOCIAL_SECURITY_NUMBER) {
+                return false;
+            }
+            Integer nameId = nameIds.get(p.getName());
+            if (nameId == null) {
+                nameId = nameBytes.size();
+                nameIds.put(p.getName(), nameId);
+                byte[] bytes = p.getName().getBytes(StandardCharsets.UTF_8);
+                nameBytes.add(bytes);
+                nameBytesLength += bytes.length;
+            }
+            records.putLong(ssn).putInt((int) p.getMemberShipPaidDate().toEpochDay()).putInt(nameId);
+        }
+
+        ByteBuffer nameTable = ByteBuffer.allocate((nameBytes.size() + 1) * 4 + nameBytesLength);
+        int offset = 0;
+        for (byte[] bytes : nameBytes) {
+            nameTable.putInt(offset);
+            offset += bytes.length;
+        }
+        nameTable.putInt(offset);
+        for (byte[] bytes : nameBytes) {
+            nameTable.put(bytes);
+        }
+
+        Path temporaryPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                    .putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putLong(Files.size(sourcePath))
+                    .putLong(Files.getLastModifiedTime(sourcePath).toMillis())
+                    .putInt(customers.size())
+                    .putInt(nameBytes.size())
+                    .putInt(nameBytesLength);
+
+            CRC32 crc = new CRC32();
+            crc.update(header.array());
+            crc.update(records.array());
+            crc.update(nameTable.array());
+
+            try (OutputStream out = Files.newOutputStream(temporaryPath)) {
+                out.write(header.array());
+                out.write(records.array());
+                out.write(nameTable.array());
+                out.write(ByteBuffer.allocate(CHECKSUM_SIZE).putLong(crc.getValue()).array());
+            }
+            Files.move(temporaryPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println("Error while writing snapshot: " + snapshotPath);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Keeps the customer register and the workout sheet in a LogStore, so updating a member or logging a
+ * check-in is a point write instead of rewriting or scanning a text file.
+ * <p>
+ * Customers are stored under "c/" + SSN with the name, the paid date and the sequence number they were
+ * added with as value, so the register is read back in the order of the customer file. Workouts are stored
+ * under "w/" + date + "/" + sequence number with "SSN, name" as value, so they are kept in date order and a
+ * date range is read with one scan. Both text formats can be imported and exported; an exported workout
+ * sheet is in date order even if the imported one was not.
+ */
+public class GymStore implements WorkoutSink {
+
+    static final String CUSTOMER_PREFIX = "c/";
+    static final String WORKOUT_PREFIX = "w/";
+    private static final String WORKOUT_SHEET_HEADER = "Workout sheet:";
+
+    private final RegisterPerson registerPerson = new RegisterPerson();
+    private final LogStore store;
+
+    /**
+     * Opens the store in a directory, recovering writes from before a crash.
+     *
+     * @param directory The directory of the store. It is created if it does not exist.
+     * @throws IOException If the store cannot be opened.
+     */
+    public GymStore(Path directory) throws IOException {
+        this(new LogStore(directory));
+    }
+
+    public GymStore(LogStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Finds a customer by social security number.
+     *
+     * @param socialSecurityNumber The social security number of the customer.
+     * @return The customer, or null if there is no customer with that number.
+     * @throws IOException If the store cannot be read.
+     */
+    public Person getCustomer(String socialSecurityNumber) throws IOException {
+        String value = store.get(CUSTOMER_PREFIX + socialSecurityNumber);
+        return value == null ? null : decodeCustomer(socialSecurityNumber, value);
+    }
+
+    /**
+     * Reads the whole register.
+     *
+     * @return Every customer, in the order they were imported or added, like the customer file.
+     * @throws IOException If the store cannot be read.
+     */
+    public ArrayList<Person> getCustomers() throws IOException {
+        SortedMap<String, String> entries = store.scanPrefix(CUSTOMER_PREFIX);
+        ArrayList<Map.Entry<String, String>> ordered = new ArrayList<>(entries.entrySet());
+        ordered.sort(Comparator.comparingLong(entry -> customerSequence(entry.getValue())));
+        ArrayList<Person> customers = new ArrayList<>(ordered.size());
+        for (Map.Entry<String, String> entry : ordered) {
+            customers.add(decodeCustomer(entry.getKey().substring(CUSTOMER_PREFIX.length()), entry.getValue()));
+        }
+        return customers;
+    }
+
+    /**
+     * Adds a customer at the end of the register, or replaces the name and paid date of the customer with
+     * the same social security number, keeping their place.
+     *
+     * @param person The customer.
+     * @throws IOException If the write could not be logged.
+     */
+    public synchronized void putCustomer(Person person) throws IOException {
+        String key = CUSTOMER_PREFIX + person.getSocialSecurityNumber();
+        String previous = store.get(key);
+        store.put(key, encodeCustomer(person, previous == null ? store.getSequence() + 1 : customerSequence(previous)));
+    }
+
+    /**
+     * Removes a customer.
+     *
+     * @param socialSecurityNumber The social security number of the customer.
+     * @throws IOException If the removal could not be logged.
+     */
+    public void removeCustomer(String socialSecurityNumber) throws IOException {
+        store.delete(CUSTOMER_PREFIX + socialSecurityNumber);
+    }
+
+    /**
+     * Logs a workout for a paying customer.
+     *
+     * @param person The paying customer for whom the workout entry is created.
+     * @param date The date of the workout.
+     * @throws IOException If the write could not be logged.
+     */
+    @Override
+    public synchronized void append(Person person, LocalDate date) throws IOException {
+        store.put(workoutKey(registerPerson.formatDateToString(date), store.getSequence() + 1),
+                person.getSocialSecurityNumber() + ", " + person.getName());
+    }
+
+    /**
+     * Reads the workouts from one date up to and including another.
+     *
+     * @param from The first date to include.
+     * @param to The last date to include.
+     * @return One {SSN, name, date} array per workout, in date order and then in the order they were logged.
+     * @throws IOException If the store cannot be read.
+     */
+    public List<String[]> getWorkouts(LocalDate from, LocalDate to) throws IOException {
+        return decodeWorkouts(store.scan(WORKOUT_PREFIX + registerPerson.formatDateToString(from),
+                WORKOUT_PREFIX + registerPerson.formatDateToString(to.plusDays(1))));
+    }
+
+    /**
+     * Reads every workout, including imported entries whose date could not be parsed.
+     *
+     * @return One {SSN, name, date} array per workout, in date order and then in the order they were logged.
+     * @throws IOException If the store cannot be read.
+     */
+    public List<String[]> getWorkouts() throws IOException {
+        return decodeWorkouts(store.scanPrefix(WORKOUT_PREFIX));
+    }
+
+    /**
+     * Checks if the store has neither customers nor workouts, for example because it was just created.
+     *
+     * @return True if the store is empty; false otherwise.
+     * @throws IOException If the store cannot be read.
+     */
+    public boolean isEmpty() throws IOException {
+        return store.getSequence() == 0 || store.scan("", String.valueOf(Character.MAX_VALUE), 1).isEmpty();
+    }
+
+    /**
+     * Imports a customer file in the format read by RegisterPerson.createCustomerListFromFile, keeping the
+     * order of the file. When a social security number is listed more than once, the first entry is kept,
+     * since that is the one a lookup in the file finds.
+     *
+     * @param filePath The customer file.
+     * @return The number of customers read from the file.
+     * @throws IOException If the store cannot be written.
+     */
+    public synchronized int importCustomers(Path filePath) throws IOException {
+        ArrayList<Person> customers = registerPerson.createCustomerListFromFile(filePath.toString());
+        TreeMap<String, String> batch = new TreeMap<>();
+        long sequence = store.getSequence() + 1;
+        for (Person p : customers) {
+            // Only customers that are written take a number, since the store counts only written records
+            // and putCustomer numbers the next customer from that count.
+            String key = CUSTOMER_PREFIX + p.getSocialSecurityNumber();
+            if (!batch.containsKey(key)) {
+                batch.put(key, encodeCustomer(p, sequence++));
+            }
+        }
+        store.write(batch);
+        return customers.size();
+    }
+
+    /**
+     * Imports a workout sheet in the format written by RegisterPerson.addWorkoutInFileForPayingCustomers.
+     * Dates are kept as they are written, so entries with a damaged date are exported unchanged. Workouts
+     * are stored in date order, so a sheet whose entries are not in date order is exported sorted by date,
+     * keeping the order of the sheet for entries with the same date.
+     *
+     * @param filePath The workout sheet.
+     * @return The number of workouts read from the file.
+     * @throws IOException If the file cannot be read or the store cannot be written.
+     */
+    public synchronized int importWorkouts(Path filePath) throws IOException {
+        TreeMap<String, String> batch = new TreeMap<>();
+        long sequence = store.getSequence() + 1;
+        try (BufferedReader reader = Files.newBufferedReader(filePath)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.equals(WORKOUT_SHEET_HEADER)) {
+                    continue;
+                }
+                String date = reader.readLine();
+                if (date == null) {
+                    break;
+                }
+                batch.put(workoutKey(date.trim(), sequence++), line.trim());
+            }
+        }
+        store.write(batch);
+        return batch.size();
+    }
+
+    /**
+     * Writes the register in the format read by RegisterPerson.createCustomerListFromFile.
+     *
+     * @param filePath The customer file to write.
+     * @throws IOException If the store cannot be read or the file cannot be written.
+     */
+    public void exportCustomers(Path filePath) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(filePath)) {
+            boolean first = true;
+            for (Person p : getCustomers()) {
+                writer.write((first ? "" : "\n") + p.getSocialSecurityNumber() + ", " + p.getName() + "\n"
+                        + registerPerson.formatDateToString(p.getMemberShipPaidDate()));
+                first = false;
+            }
+        }
+    }
+
+    /**
+     * Writes the workouts in the format written by RegisterPerson.addWorkoutInFileForPayingCustomers, in
+     * date order and then in the order they were logged or imported.
+     *
+     * @param filePath The workout sheet to write.
+     * @throws IOException If the store cannot be read or the file cannot be written.
+     */
+    public void exportWorkouts(Path filePath) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(filePath)) {
+            writer.write(WORKOUT_SHEET_HEADER);
+            for (String[] workout : getWorkouts()) {
+                writer.write("\n" + workout[0] + ", " + workout[1] + "\n" + workout[2]);
+            }
+        }
+    }
+
+    public LogStore getLogStore() {
+        return store;
+    }
+
+    @Override
+    public Path getPath() {
+        return store.getDirectory();
+    }
+
+    /**
+     * Forces the log of the store to the disk. Segments are written when the in-memory table fills up, not
+     * on every flush, so flushing after every batch of workouts stays cheap.
+     *
+     * @throws IOException If the log could not be forced to the disk.
+     */
+    @Override
+    public void flush() throws IOException {
+        store.sync();
+    }
+
+    @Override
+    public void close() throws IOException {
+        store.close();
+    }
+
+    private static String workoutKey(String date, long sequence) {
+        return WORKOUT_PREFIX + date + "/" + String.format("%019d", sequence);
+    }
+
+    private String encodeCustomer(Person person, long sequence) {
+        return person.getName() + "\n" + registerPerson.formatDateToString(person.getMemberShipPaidDate())
+                + "\n" + sequence;
+    }
+
+    private Person decodeCustomer(String socialSecurityNumber, String value) {
+        int lineBreak = value.indexOf('\n');
+        int sequenceBreak = value.indexOf('\n', lineBreak + 1);
+        return registerPerson.createCustomer(new String[]{socialSecurityNumber, value.substring(0, lineBreak),
+                value.substring(lineBreak + 1, sequenceBreak < 0 ? value.length() : sequenceBreak)});
+    }
+
+    /**
+     * @return The sequence number a customer was added with, or 0 for customers stored without one, which
+     * then come first in order of social security number.
+     */
+    private static long customerSequence(String value) {
+        int sequenceBreak = value.indexOf('\n', value.indexOf('\n') + 1);
+        return sequenceBreak < 0 ? 0 : Long.parseLong(value.substring(sequenceBreak + 1));
+    }
+
+    private static List<String[]> decodeWorkouts(Map<String, String> entries) {
+        ArrayList<String[]> workouts = new ArrayList<>(entries.size());
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            String key = entry.getKey();
+            String value = entry.getValue();
+            int comma = value.indexOf(',');
+            workouts.add(new String[]{value.substring(0, Math.max(comma, 0)).trim(),
+                    value.substring(comma + 1).trim(),
+                    key.substring(WORKOUT_PREFIX.length(), key.lastIndexOf('/'))});
+        }
+        return workouts;
+    }
+}
@@ -0,0 +1,124 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends requests to a CheckInServer from several concurrent clients and reports the latency percentiles
+ * and throughput. By default it sends lookups, which answer like a check-in but write no workout, so a
+ * server over the real workout sheet can be measured without filling it with made-up visits.
+ */
+public class LoadGenerator {
+
+    private final URI requestUri;
+    private final List<String> inputs;
+    private final HttpClient client;
+
+    /**
+     * Creates a load generator that sends lookups to a check-in server.
+     *
+     * @param baseUri The address of the server, for example http://localhost:8080.
+     * @param inputs The names and SSNs to send, used in turn.
+     */
+    public LoadGenerator(URI baseUri, List<String> inputs) {
+        this(baseUri, CheckInServer.LOOKUP_PATH, inputs);
+    }
+
+    /**
+     * Creates a load generator for one path of a check-in server. Sending to CheckInServer.CHECK_IN_PATH
+     * writes a workout for every paying customer, so it should only be used on a server with a scratch
+     * workout sheet.
+     *
+     * @param baseUri The address of the server, for example http://localhost:8080.
+     * @param path CheckInServer.LOOKUP_PATH or CheckInServer.CHECK_IN_PATH.
+     * @param inputs The names and SSNs to send, used in turn.
+     */
+    public LoadGenerator(URI baseUri, String path, List<String> inputs) {
+        this.requestUri = baseUri.resolve(path);
+        this.inputs = inputs;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    /**
+     * Sends a number of requests spread over a number of concurrent clients.
+     *
+     * @param requests The total number of requests to send. With 0 an empty run is reported.
+     * @param concurrency The number of clients sending at the same time.
+     * @return A report with p50/p99 latency and requests/sec.
+     * @throws InterruptedException If the run is interrupted.
+     */
+    public String run(int requests, int concurrency) throws InterruptedException {
+        long[] latencies = new long[requests];
+        AtomicInteger nextRequest = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+
+        long start = System.nanoTime();
+        Future<?>[] running = new Future<?>[concurrency];
+        for (int c = 0; c < concurrency; c++) {
+            running[c] = clients.submit(() -> {
+                for (int i = nextRequest.getAndIncrement(); i < requests; i = nextRequest.getAndIncrement()) {
+                    long sent = System.nanoTime();
+                    if (!send(inputs.get(i % inputs.size()))) {
+                        failures.incrementAndGet();
+                    }
+                    latencies[i] = System.nanoTime() - sent;
+                }
+            });
+        }
+        for (Future<?> client : running) {
+            try {
+                client.get();
+            } catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+            }
+        }
+        long elapsedNanos = Math.max(System.nanoTime() - start, 1);
+        clients.shutdown();
+
+        Arrays.sort(latencies);
+        return String.format("%d requests, %d clients, %d failed: p50 %.3f ms, p99 %.3f ms, max %.3f ms, "
+                        + "%d requests/sec",
+                requests, concurrency, failures.get(),
+                percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.99) / 1e6,
+                percentile(latencies, 1.0) / 1e6, requests * 1_000_000_000L / elapsedNanos);
+    }
+
+    private boolean send(String input) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(requestUri + "?input="
+                        + URLEncoder.encode(input, StandardCharsets.UTF_8)))
+                .GET()
+                .build();
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            return response.statusCode() == 200 || response.statusCode() == 400;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static long percentile(long[] sortedLatencies, double percentile) {
+        if (sortedLatencies.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(index, 0)];
+    }
+}
@@ -0,0 +1,634 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * A small embedded key-value store with sorted string keys, built as a log-structured merge tree.
+ * <p>
+ * Every write is appended to a write-ahead log and kept in a sorted in-memory table. When the table grows
+ * past a limit it is written to an immutable sorted segment file with a sparse key index, and the log is
+ * started over. When there are too many segments they are merged into one. Reads look in the table first
+ * and then in the segments from newest to oldest, so a point lookup costs one binary search per segment.
+ * <p>
+ * On open, the segments are loaded and the log is replayed, stopping at the first torn or corrupt record.
+ * Segments are written to a temporary file and moved into place, so a crash never leaves half a segment.
+ * Methods are synchronized; the store is meant for one process at a time.
+ */
+public class LogStore implements Closeable {
+
+    private static final String LOG_FILE = "wal.log";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int SEGMENT_MAGIC = 0x47594D4C;
+    private static final int FOOTER_SIZE = 8 + 8 + 8 + 8 + 8 + 4;
+    private static final int LOG_RECORD_HEADER_SIZE = 4 + 8 + 4 + 4;
+    private static final int INDEX_INTERVAL = 32;
+    private static final String TOMBSTONE = new String("");
+
+    private final Path directory;
+    private final long memtableLimitBytes;
+    private final int maxSegments;
+    private final boolean syncEveryWrite;
+    private final ArrayList<Segment> segments = new ArrayList<>();
+    private TreeMap<String, String> memtable = new TreeMap<>();
+    private long memtableBytes;
+    private FileChannel log;
+    private long sequence;
+    private long nextSegmentId;
+    private boolean closed;
+
+    /**
+     * Opens a store with a 4 MB in-memory table, at most 8 segments and the log forced to the disk on flush
+     * and close only.
+     *
+     * @param directory The directory of the store. It is created if it does not exist.
+     * @throws IOException If the store cannot be opened or recovered.
+     */
+    public LogStore(Path directory) throws IOException {
+        this(directory, 4 << 20, 8, false);
+    }
+
+    /**
+     * Opens a store, recovering writes that were logged but not yet written to a segment.
+     *
+     * @param directory The directory of the store. It is created if it does not exist.
+     * @param memtableLimitBytes The size of key and value text that makes the in-memory table a new segment.
+     * @param maxSegments The number of segments that makes them merge into one.
+     * @param syncEveryWrite True to force the log to the disk after every write.
+     * @throws IOException If the store cannot be opened or recovered.
+     */
+    public LogStore(Path directory, long memtableLimitBytes, int maxSegments, boolean syncEveryWrite)
+            throws IOException {
+        this.directory = directory;
+        this.memtableLimitBytes = memtableLimitBytes;
+        this.maxSegments = Math.max(maxSegments, 2);
+        this.syncEveryWrite = syncEveryWrite;
+        Files.createDirectories(directory);
+
+        loadSegments();
+        replayLog();
+    }
+
+    /**
+     * Reads the value of a key.
+     *
+     * @param key The key to read.
+     * @return The value, or null if the key has no value.
+     * @throws IOException If a segment cannot be read.
+     */
+    public synchronized String get(String key) throws IOException {
+        String value = memtable.get(key);
+        for (int i = segments.size() - 1; value == null && i >= 0; i--) {
+            value = segments.get(i).get(key);
+        }
+        return value == TOMBSTONE ? null : value;
+    }
+
+    /**
+     * Writes the value of a key.
+     *
+     * @param key The key to write.
+     * @param value The new value.
+     * @throws IOException If the write could not be logged.
+     */
+    public void put(String key, String value) throws IOException {
+        TreeMap<String, String> batch = new TreeMap<>();
+        batch.put(key, value);
+        write(batch);
+    }
+
+    /**
+     * Removes the value of a key.
+     *
+     * @param key The key to remove.
+     * @throws IOException If the removal could not be logged.
+     */
+    public void delete(String key) throws IOException {
+        TreeMap<String, String> batch = new TreeMap<>();
+        batch.put(key, null);
+        write(batch);
+    }
+
+    /**
+     * Writes several keys with one append to the log.
+     *
+     * @param batch The keys to write and their new values, or null for keys to remove.
+     * @throws IOException If the writes could not be logged.
+     */
+    public synchronized void write(Map<String, String> batch) throws IOException {
+        if (closed) {
+            throw new IOException("Store '" + directory + "' is closed");
+        }
+        ArrayList<ByteBuffer> records = new ArrayList<>(batch.size());
+        for (Map.Entry<String, String> entry : batch.entrySet()) {
+            records.add(encodeLogRecord(++sequence, entry.getKey(), entry.getValue()));
+        }
+        for (ByteBuffer record : records) {
+            while (record.hasRemaining()) {
+                log.write(record);
+            }
+        }
+        if (syncEveryWrite) {
+            log.force(false);
+        }
+
+        for (Map.Entry<String, String> entry : batch.entrySet()) {
+            applyToMemtable(entry.getKey(), entry.getValue() == null ? TOMBSTONE : entry.getValue());
+        }
+        if (memtableBytes >= memtableLimitBytes) {
+            flushMemtable();
+        }
+    }
+
+    /**
+     * Reads every key from one key up to, but not including, another.
+     *
+     * @param fromKey The first key to include.
+     * @param toKey The first key not to include.
+     * @return The keys that have a value, in key order.
+     * @throws IOException If a segment cannot be read.
+     */
+    public synchronized SortedMap<String, String> scan(String fromKey, String toKey) throws IOException {
+        TreeMap<String, String> merged = new TreeMap<>();
+        for (Segment segment : segments) {
+            segment.scan(fromKey, toKey, merged);
+        }
+        merged.putAll(memtable.subMap(fromKey, toKey));
+        merged.values().removeIf(value -> value == TOMBSTONE);
+        return merged;
+    }
+
+    /**
+     * Reads the first keys from one key up to, but not including, another, without reading the rest of
+     * the range. The segments are read in windows of at most limit entries each.
+     *
+     * @param fromKey The first key to include.
+     * @param toKey The first key not to include.
+     * @param limit The most keys to return.
+     * @return At most limit keys that have a value, the first ones in key order.
+     * @throws IOException If a segment cannot be read.
+     */
+    public synchronized SortedMap<String, String> scan(String fromKey, String toKey, int limit) throws IOException {
+        TreeMap<String, String> found = new TreeMap<>();
+        String from = fromKey;
+        while (found.size() < limit && from.compareTo(toKey) < 0) {
+            TreeMap<String, String> merged = new TreeMap<>();
+            String end = toKey;
+            for (Segment segment : segments) {
+                String readThrough = segment.scan(from, end, merged, limit);
+                if (readThrough != null) {
+                    // Keys after the last one read from this segment are not complete in this window.
+                    end = readThrough + Character.MIN_VALUE;
+                }
+            }
+            merged.putAll(memtable.subMap(from, end));
+            for (Map.Entry<String, String> entry : merged.headMap(end).entrySet()) {
+                if (entry.getValue() != TOMBSTONE) {
+                    found.put(entry.getKey(), entry.getValue());
+                    if (found.size() == limit) {
+                        break;
+                    }
+                }
+            }
+            from = end;
+        }
+        return found;
+    }
+
+    /**
+     * Reads every key that starts with a prefix.
+     *
+     * @param prefix The start of the keys.
+     * @return The keys that have a value, in key order.
+     * @throws IOException If a segment cannot be read.
+     */
+    public SortedMap<String, String> scanPrefix(String prefix) throws IOException {
+        return scan(prefix, prefix + Character.MAX_VALUE);
+    }
+
+    /**
+     * Returns the number of writes made to the store since it was created. Every write gets the next number.
+     *
+     * @return The sequence number of the last write.
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Writes the in-memory table to a new segment and starts a new log, merging the segments if there
+     * are too many.
+     *
+     * @throws IOException If the segment could not be written.
+     */
+    public synchronized void flush() throws IOException {
+        if (!memtable.isEmpty()) {
+            flushMemtable();
+        } else {
+            log.force(false);
+        }
+    }
+
+    /**
+     * Forces the log to the disk, so every logged write survives a crash. The in-memory table is left as it
+     * is; it becomes a segment once it reaches its size limit.
+     *
+     * @throws IOException If the store is closed or the log could not be forced to the disk.
+     */
+    public synchronized void sync() throws IOException {
+        if (closed) {
+            throw new IOException("Store '" + directory + "' is closed");
+        }
+        log.force(false);
+    }
+
+    /**
+     * Merges all segments into one, dropping removed keys and old values.
+     *
+     * @throws IOException If the merged segment could not be written.
+     */
+    public synchronized void compact() throws IOException {
+        if (segments.size() < 2) {
+            return;
+        }
+        TreeMap<String, String> merged = new TreeMap<>();
+        for (Segment segment : segments) {
+            segment.scan("", String.valueOf(Character.MAX_VALUE), merged);
+        }
+        merged.values().removeIf(value -> value == TOMBSTONE);
+
+        Segment newest = segments.get(segments.size() - 1);
+        Segment compacted = writeSegment(merged, newest.lastSequence, newest.id);
+        for (Segment segment : segments) {
+            Files.deleteIfExists(segment.path);
+        }
+        segments.clear();
+        segments.add(compacted);
+    }
+
+    /**
+     * Forces the log to the disk and closes the store. Logged writes are kept in the log and replayed
+     * on the next open.
+     *
+     * @throws IOException If the log could not be forced to the disk.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            log.force(false);
+        } finally {
+            log.close();
+        }
+    }
+
+    private void applyToMemtable(String key, String value) {
+        String previous = memtable.put(key, value);
+        memtableBytes += value.length() - (previous == null ? -key.length() : previous.length());
+    }
+
+    private void flushMemtable() throws IOException {
+        segments.add(writeSegment(memtable, sequence, -1));
+        memtable = new TreeMap<>();
+        memtableBytes = 0;
+
+        log.truncate(0);
+        log.force(true);
+        if (segments.size() > maxSegments) {
+            compact();
+        }
+    }
+
+    /**
+     * Loads the segments in the directory. Segments that a finished compaction replaced, but that were
+     * not deleted before a crash, are deleted now.
+     */
+    private void loadSegments() throws IOException {
+        ArrayList<Segment> found = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*")) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                if (fileName.endsWith(SEGMENT_SUFFIX)) {
+                    found.add(new Segment(file, Long.parseLong(fileName.substring(SEGMENT_PREFIX.length(),
+                            fileName.length() - SEGMENT_SUFFIX.length()))));
+                } else {
+                    Files.delete(file);
+                }
+            }
+        }
+        found.sort((a, b) -> Long.compare(a.id, b.id));
+
+        long replacedThrough = -1;
+        for (Segment segment : found) {
+            replacedThrough = Math.max(replacedThrough, segment.replacesThrough);
+        }
+        for (Segment segment : found) {
+            if (segment.id <= replacedThrough) {
+                Files.delete(segment.path);
+            } else {
+                segments.add(segment);
+            }
+            sequence = Math.max(sequence, segment.lastSequence);
+            nextSegmentId = Math.max(nextSegmentId, segment.id + 1);
+        }
+    }
+
+    /**
+     * Replays the log into the in-memory table and cuts it after the last complete record.
+     */
+    private void replayLog() throws IOException {
+        log = FileChannel.open(directory.resolve(LOG_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long size = log.size();
+        ByteBuffer content = ByteBuffer.allocate((int) size);
+        while (content.hasRemaining() && log.read(content, content.position()) >= 0) {
+            // Keep reading until the whole log is in the buffer.
+        }
+        content.flip();
+
+        long validLength = 0;
+        while (content.remaining() >= LOG_RECORD_HEADER_SIZE) {
+            int start = content.position();
+            int checksum = content.getInt();
+            long recordSequence = content.getLong();
+            int keyLength = content.getInt();
+            int valueLength = content.getInt();
+            if (keyLength < 0 || valueLength < -1
+                    || content.remaining() < (long) keyLength + Math.max(valueLength, 0)) {
+                break;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(content.slice(start + 4, LOG_RECORD_HEADER_SIZE - 4 + keyLength + Math.max(valueLength, 0)));
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            String key = readString(content, keyLength);
+            String value = valueLength < 0 ? TOMBSTONE : readString(content, valueLength);
+            if (recordSequence > sequence) {
+                applyToMemtable(key, value);
+                sequence = recordSequence;
+            }
+            validLength = content.position();
+        }
+
+        if (validLength < size) {
+            System.out.println("Discarded " + (size - validLength) + " bytes of an unfinished write in '"
+                    + directory.resolve(LOG_FILE) + "'");
+            log.truncate(validLength);
+            log.force(true);
+        }
+        log.position(validLength);
+    }
+
+    /**
+     * Writes a segment. The log is replayed from after lastSequence on open, so it must be the sequence
+     * number of the newest write the segment holds.
+     */
+    private Segment writeSegment(SortedMap<String, String> entries, long lastSequence, long replacesThrough)
+            throws IOException {
+        long id = nextSegmentId++;
+        Path path = directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+        Path temporary = directory.resolve(path.getFileName() + ".tmp");
+
+        ByteArrayOutput out = new ByteArrayOutput();
+        ByteArrayOutput index = new ByteArrayOutput();
+        int indexEntries = 0;
+        int count = 0;
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            if (count++ % INDEX_INTERVAL == 0) {
+                index.putInt(key.length).put(key).putLong(out.size());
+                indexEntries++;
+            }
+            byte[] value = entry.getValue() == TOMBSTONE ? null : entry.getValue().getBytes(StandardCharsets.UTF_8);
+            out.putInt(key.length).putInt(value == null ? -1 : value.length).put(key);
+            if (value != null) {
+                out.put(value);
+            }
+        }
+        long indexPosition = out.size();
+        out.putInt(indexEntries).put(index.toByteArray());
+        out.putLong(indexPosition).putLong(count).putLong(lastSequence).putLong(replacesThrough);
+        CRC32 crc = new CRC32();
+        crc.update(out.toByteArray());
+        out.putLong(crc.getValue()).putInt(SEGMENT_MAGIC);
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return new Segment(path, id);
+    }
+
+    private static ByteBuffer encodeLogRecord(long sequence, String key, String value) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(LOG_RECORD_HEADER_SIZE + keyBytes.length
+                + (valueBytes == null ? 0 : valueBytes.length));
+        record.putInt(0).putLong(sequence).putInt(keyBytes.length).putInt(valueBytes == null ? -1 : valueBytes.length)
+                .put(keyBytes);
+        if (valueBytes != null) {
+            record.put(valueBytes);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, record.capacity() - 4);
+        record.putInt(0, (int) crc.getValue());
+        return record.flip();
+    }
+
+    private static String readString(ByteBuffer buffer, int length) {
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    /**
+     * An immutable sorted segment file, memory-mapped, with every 32nd key kept in memory.
+     */
+    private static class Segment {
+
+        private final Path path;
+        private final long id;
+        private final MappedByteBuffer buffer;
+        private final int dataEnd;
+        private final String[] indexKeys;
+        private final int[] indexPositions;
+        private final long lastSequence;
+        private final long replacesThrough;
+
+        Segment(Path path, long id) throws IOException {
+            this.path = path;
+            this.id = id;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size < FOOTER_SIZE + 4 || size > Integer.MAX_VALUE) {
+                    throw new IOException("Segment '" + path + "' is corrupt");
+                }
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            int footer = buffer.capacity() - FOOTER_SIZE;
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(0, footer + 32));
+            if (buffer.getInt(footer + 40) != SEGMENT_MAGIC || buffer.getLong(footer + 32) != crc.getValue()) {
+                throw new IOException("Segment '" + path + "' is corrupt");
+            }
+            dataEnd = (int) buffer.getLong(footer);
+            lastSequence = buffer.getLong(footer + 16);
+            replacesThrough = buffer.getLong(footer + 24);
+
+            ByteBuffer index = buffer.duplicate().position(dataEnd);
+            int indexEntries = index.getInt();
+            indexKeys = new String[indexEntries];
+            indexPositions = new int[indexEntries];
+            for (int i = 0; i < indexEntries; i++) {
+                indexKeys[i] = readMappedString(index, index.getInt());
+                indexPositions[i] = (int) index.getLong();
+            }
+        }
+
+        /**
+         * @return The value, TOMBSTONE if the key was removed, or null if the segment does not have the key.
+         */
+        String get(String key) {
+            ByteBuffer entries = buffer.duplicate().position(startPosition(key));
+            while (entries.position() < dataEnd) {
+                int keyLength = entries.getInt();
+                int valueLength = entries.getInt();
+                int compared = readMappedString(entries, keyLength).compareTo(key);
+                if (compared == 0) {
+                    return valueLength < 0 ? TOMBSTONE : readMappedString(entries, valueLength);
+                } else if (compared > 0) {
+                    return null;
+                }
+                entries.position(entries.position() + Math.max(valueLength, 0));
+            }
+            return null;
+        }
+
+        void scan(String fromKey, String toKey, TreeMap<String, String> into) {
+            scan(fromKey, toKey, into, Integer.MAX_VALUE);
+        }
+
+        /**
+         * @return The last key read if the scan stopped at the limit, or null if it read the whole range.
+         */
+        String scan(String fromKey, String toKey, TreeMap<String, String> into, int limit) {
+            ByteBuffer entries = buffer.duplicate().position(startPosition(fromKey));
+            int count = 0;
+            while (entries.position() < dataEnd) {
+                int keyLength = entries.getInt();
+                int valueLength = entries.getInt();
+                String key = readMappedString(entries, keyLength);
+                if (key.compareTo(toKey) >= 0) {
+                    return null;
+                }
+                if (key.compareTo(fromKey) >= 0) {
+                    into.put(key, valueLength < 0 ? TOMBSTONE : readMappedString(entries, valueLength));
+                    if (++count == limit) {
+                        return key;
+                    }
+                } else {
+                    entries.position(entries.position() + Math.max(valueLength, 0));
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Finds the position of the last indexed key that is not after a key.
+         */
+        private int startPosition(String key) {
+            int low = 0;
+            int high = indexKeys.length - 1;
+            int start = 0;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (indexKeys[middle].compareTo(key) <= 0) {
+                    start = indexPositions[middle];
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return start;
+        }
+
+        private static String readMappedString(ByteBuffer buffer, int length) {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * A growing byte array with big-endian writes, for building a segment in memory.
+     */
+    private static class ByteArrayOutput {
+
+        private ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+        ByteArrayOutput put(byte[] bytes) {
+            ensureRemaining(bytes.length).put(bytes);
+            return this;
+        }
+
+        ByteArrayOutput putInt(int value) {
+            ensureRemaining(4).putInt(value);
+            return this;
+        }
+
+        ByteArrayOutput putLong(long value) {
+            ensureRemaining(8).putLong(value);
+            return this;
+        }
+
+        int size() {
+            return buffer.position();
+        }
+
+        byte[] toByteArray() {
+            byte[] bytes = new byte[buffer.position()];
+            buffer.get(0, bytes);
+            return bytes;
+        }
+
+        private ByteBuffer ensureRemaining(int length) {
+            if (buffer.remaining() < length) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + length));
+                grown.put(buffer.flip());
+                buffer = grown;
+            }
+            return buffer;
+        }
+    }
+}
@@ -1,6 +1,24 @@
 public class Main {
     public static void main(String[] args) {
         RegisterPerson r = new RegisterPerson();
-        r.run();
+
+        if (args.length > 0 && args[0].equals("server")) {
+            r.runServer(args.length > 1 ? Integer.parseInt(args[1]) : 8080);
+        } else if (args.length > 0 && args[0].equals("loadgen")) {
+            r.runLoadGenerator(args.length > 1 ? Integer.parseInt(args[1]) : 8080,
+                    args.length > 2 ? Integer.parseInt(args[2]) : 100_000,
+                    args.length > 3 ? Integer.parseInt(args[3]) : 32);
+        } else if (args.length > 1 && args[0].equals("batch")) {
+            r.runBatch(args[1]);
+        } else if (args.length > 4 && args[0].equals(ShardedRegister.SHARD_COMMAND)) {
+            r.runShard(args[1], Integer.parseInt(args[2]), Integer.parseInt(args[3]), args[4]);
+        } else if (args.length > 0 && args[0].equals("sharded")) {
+            r.runSharded(args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors());
+        } else if (args.length > 0 && args[0].equals("export")) {
+            r.runExport(args.length > 1 ? args[1] : "Paying customers export.txt",
+                    args.length > 2 ? args[2] : "Workout sheet export.txt");
+        } else {
+            r.run();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,80 @@
+import java.time.Clock;
+import java.time.LocalDate;
+
+/**
+ * Keeps today's date and the membership cutoff date (one year ago) cached until midnight, so checking if
+ * a customer has paid only compares two dates instead of calling LocalDate.now().minusYears(1) each time.
+ * Between midnights, reading the cutoff is a clock read and a field read and does not allocate.
+ */
+public class MembershipCutoff {
+
+    private static final MembershipCutoff SYSTEM_DEFAULT = new MembershipCutoff(Clock.systemDefaultZone());
+
+    private final Clock clock;
+    private volatile Day day;
+
+    public MembershipCutoff(Clock clock) {
+        this.clock = clock;
+        this.day = new Day(clock);
+    }
+
+    /**
+     * Returns the cutoff that follows the system clock and time zone.
+     *
+     * @return The shared cutoff for the system default time zone.
+     */
+    public static MembershipCutoff systemDefault() {
+        return SYSTEM_DEFAULT;
+    }
+
+    /**
+     * Returns the latest payment date that no longer counts as paid: today minus one year.
+     *
+     * @return The cutoff date for today.
+     */
+    public LocalDate getCutoffDate() {
+        return currentDay().cutoffDate;
+    }
+
+    public LocalDate getToday() {
+        return currentDay().today;
+    }
+
+    public long getTodayEpochDay() {
+        return currentDay().todayEpochDay;
+    }
+
+    /**
+     * Checks if a membership paid on a date is still active today.
+     *
+     * @param memberShipPaidDate The date the membership was paid.
+     * @return True if the date is after the cutoff date; false otherwise.
+     */
+    public boolean isPaying(LocalDate memberShipPaidDate) {
+        return memberShipPaidDate.isAfter(currentDay().cutoffDate);
+    }
+
+    private Day currentDay() {
+        Day current = day;
+        if (clock.millis() >= current.endMillis) {
+            current = new Day(clock);
+            day = current;
+        }
+        return current;
+    }
+
+    private static class Day {
+
+        private final LocalDate today;
+        private final long todayEpochDay;
+        private final LocalDate cutoffDate;
+        private final long endMillis;
+
+        Day(Clock clock) {
+            today = LocalDate.now(clock);
+            todayEpochDay = today.toEpochDay();
+            cutoffDate = today.minusYears(1);
+            endMillis = today.plusDays(1).atStartOfDay(clock.getZone()).toInstant().toEpochMilli();
+        }
+    }
+}
@@ -0,0 +1,224 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the customers of a register sorted by the day their membership expires, and one paying bit
+ * per customer.
+ * <p>
+ * Checking if a customer is paying is a single bit read. When the date changes, only the customers whose
+ * membership expired since the last check have their bit cleared, and "who expires between these dates"
+ * is answered with a binary search, in time proportional to the number of customers returned.
+ * <p>
+ * The bits are never changed once they are published. Moving to a new day builds a new bit array and
+ * publishes it with one volatile write, so a lookup never sees a half updated array. A lookup for a day
+ * before the published one, from a caller that read the date just before midnight, is answered from the
+ * customer's paid date and does not move the timeline back. Only if earlier days keep being asked for,
+ * because the clock really went back, are the bits rebuilt for the earlier day.
+ */
+public class MembershipTimeline {
+
+    private static final int REWIND_LOOKUPS = 1024;
+
+    private final List<Person> customers;
+    private final int[] positionsByExpiry;
+    private final int[] expiryDays;
+    private volatile PayingBits payingBits;
+    private long rewindDay = Long.MIN_VALUE;
+    private int rewindLookups;
+
+    /**
+     * Builds the timeline for a register as of a day.
+     *
+     * @param customers The customers of the register, in register order.
+     * @param todayEpochDay The current day, as LocalDate.toEpochDay().
+     */
+    public MembershipTimeline(List<Person> customers, long todayEpochDay) {
+        this(customers, paidEpochDays(customers), todayEpochDay);
+    }
+
+    /**
+     * Builds the timeline for a register from paid dates that have already been read, so no Person has
+     * to be created per customer.
+     *
+     * @param customers The customers of the register, in register order.
+     * @param paidEpochDays The day every customer paid, as LocalDate.toEpochDay(), in register order.
+     * @param todayEpochDay The current day, as LocalDate.toEpochDay().
+     */
+    public MembershipTimeline(List<Person> customers, int[] paidEpochDays, long todayEpochDay) {
+        this.customers = customers;
+        int count = paidEpochDays.length;
+
+        long[] expiryAndPosition = new long[count];
+        for (int i = 0; i < count; i++) {
+            expiryAndPosition[i] = expiryDay(LocalDate.ofEpochDay(paidEpochDays[i])) << 32 | i;
+        }
+        Arrays.sort(expiryAndPosition);
+
+        positionsByExpiry = new int[count];
+        expiryDays = new int[count];
+        for (int i = 0; i < count; i++) {
+            positionsByExpiry[i] = (int) expiryAndPosition[i];
+            expiryDays[i] = (int) (expiryAndPosition[i] >> 32);
+        }
+        payingBits = build(todayEpochDay);
+    }
+
+    /**
+     * Returns the first day a membership paid on a date is no longer active: the first day whose date
+     * one year earlier is not before the paid date.
+     *
+     * @param memberShipPaidDate The date the membership was paid.
+     * @return The expiry day as LocalDate.toEpochDay().
+     */
+    public static long expiryDay(LocalDate memberShipPaidDate) {
+        LocalDate expiry = memberShipPaidDate.plusYears(1);
+        while (memberShipPaidDate.isAfter(expiry.minusYears(1))) {
+            expiry = expiry.plusDays(1);
+        }
+        return expiry.toEpochDay();
+    }
+
+    /**
+     * Checks if the customer at a position in the register has an active membership on a day.
+     *
+     * @param position The position of the customer in the register.
+     * @param todayEpochDay The current day, as LocalDate.toEpochDay().
+     * @return True if the membership is active; false otherwise.
+     */
+    public boolean isPaying(int position, long todayEpochDay) {
+        PayingBits current = payingBits;
+        if (todayEpochDay != current.day) {
+            if (todayEpochDay < current.day && !isRewound(todayEpochDay)) {
+                return expiryDay(customers.get(position).getMemberShipPaidDate()) > todayEpochDay;
+            }
+            current = rollTo(todayEpochDay);
+        }
+        return (current.bits[position >>> 6] & (1L << position)) != 0;
+    }
+
+    /**
+     * Returns the customers whose membership expires from one date up to and including another.
+     *
+     * @param from The first expiry date to include.
+     * @param to The last expiry date to include.
+     * @return The customers in order of expiry.
+     */
+    public List<Person> findExpiringBetween(LocalDate from, LocalDate to) {
+        int start = firstIndexExpiringOnOrAfter(from.toEpochDay());
+        int end = firstIndexExpiringOnOrAfter(to.toEpochDay() + 1);
+        ArrayList<Person> expiring = new ArrayList<>(Math.max(end - start, 0));
+        for (int i = start; i < end; i++) {
+            expiring.add(customers.get(positionsByExpiry[i]));
+        }
+        return expiring;
+    }
+
+    /**
+     * Gives the customers whose membership expires from one day up to and including another, without
+     * creating a Person for them.
+     *
+     * @param firstDay The first expiry day to include, as LocalDate.toEpochDay().
+     * @param lastDay The last expiry day to include, as LocalDate.toEpochDay().
+     * @return The expiry day shifted 32 bits left, or'ed with the position of the customer, in order of expiry.
+     */
+    public long[] findPositionsExpiringBetween(long firstDay, long lastDay) {
+        int start = firstIndexExpiringOnOrAfter(firstDay);
+        int end = firstIndexExpiringOnOrAfter(lastDay + 1);
+        long[] expiring = new long[Math.max(end - start, 0)];
+        for (int i = start; i < end; i++) {
+            expiring[i - start] = (long) expiryDays[i] << 32 | positionsByExpiry[i];
+        }
+        return expiring;
+    }
+
+    private static int[] paidEpochDays(List<Person> customers) {
+        int[] paidEpochDays = new int[customers.size()];
+        for (int i = 0; i < paidEpochDays.length; i++) {
+            paidEpochDays[i] = Math.toIntExact(customers.get(i).getMemberShipPaidDate().toEpochDay());
+        }
+        return paidEpochDays;
+    }
+
+    /**
+     * Counts the lookups for a day before the published one. A caller with a stale date makes a few of them
+     * just after midnight; a clock that went back keeps making them.
+     *
+     * @return True once REWIND_LOOKUPS lookups were for the same earlier day since the bits last moved.
+     */
+    private synchronized boolean isRewound(long earlierEpochDay) {
+        if (earlierEpochDay != rewindDay) {
+            rewindDay = earlierEpochDay;
+            rewindLookups = 0;
+        }
+        return ++rewindLookups >= REWIND_LOOKUPS;
+    }
+
+    /**
+     * Publishes the bits of a day. Moving forward copies the bits and clears the customers that expired
+     * since; moving back builds them again. The published array is never changed.
+     */
+    private synchronized PayingBits rollTo(long todayEpochDay) {
+        PayingBits current = payingBits;
+        if (todayEpochDay == current.day) {
+            return current;
+        }
+        PayingBits rolled;
+        if (todayEpochDay < current.day) {
+            rolled = build(todayEpochDay);
+        } else {
+            long[] bits = current.bits.clone();
+            int nextToExpire = current.nextToExpire;
+            while (nextToExpire < expiryDays.length && expiryDays[nextToExpire] <= todayEpochDay) {
+                int position = positionsByExpiry[nextToExpire];
+                bits[position >>> 6] &= ~(1L << position);
+                nextToExpire++;
+            }
+            rolled = new PayingBits(bits, todayEpochDay, nextToExpire);
+        }
+        rewindDay = Long.MIN_VALUE;
+        payingBits = rolled;
+        return rolled;
+    }
+
+    private PayingBits build(long todayEpochDay) {
+        long[] bits = new long[(expiryDays.length + 63) / 64];
+        int nextToExpire = firstIndexExpiringOnOrAfter(todayEpochDay + 1);
+        for (int i = nextToExpire; i < expiryDays.length; i++) {
+            int position = positionsByExpiry[i];
+            bits[position >>> 6] |= 1L << position;
+        }
+        return new PayingBits(bits, todayEpochDay, nextToExpire);
+    }
+
+    private int firstIndexExpiringOnOrAfter(long epochDay) {
+        int low = 0;
+        int high = expiryDays.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (expiryDays[middle] < epochDay) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * The paying bits of one day and the first customer in expiry order who is still paying on it.
+     */
+    private static class PayingBits {
+
+        private final long[] bits;
+        private final long day;
+        private final int nextToExpire;
+
+        PayingBits(long[] bits, long day, int nextToExpire) {
+            this.bits = bits;
+            this.day = day;
+            this.nextToExpire = nextToExpire;
+        }
+    }
+}
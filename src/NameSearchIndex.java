@@ -0,0 +1,344 @@
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Searches customer names by prefix and by similarity, ignoring case and accents, so the front desk can
+ * find "\u00c5sa S\u00f6derberg" by typing "asa sod" or "Asa Soderbreg".
+ * <p>
+ * Every distinct normalized name is stored once. Prefix search runs on a sorted array of every name and
+ * every word start within a name. Similar names are found through an index of the three-letter sequences
+ * (trigrams) in each name, and then ranked by their edit distance to the query.
+ */
+public class NameSearchIndex {
+
+    private final List<Person> customers;
+    private final String[] names;
+    private final int[][] positionsByNameId;
+    private final String[] prefixKeys;
+    private final int[] prefixNameIds;
+    private final HashMap<Long, Integer> trigramIds = new HashMap<>();
+    private final int[] postingListStarts;
+    private final int[] postingLists;
+
+    /**
+     * Builds the search index over the names of a register.
+     *
+     * @param customers The customers of the register, in register order.
+     */
+    public NameSearchIndex(List<Person> customers) {
+        this.customers = customers;
+
+        HashMap<String, Integer> nameIds = new HashMap<>();
+        ArrayList<String> distinctNames = new ArrayList<>();
+        ArrayList<int[]> positions = new ArrayList<>();
+        for (int i = 0; i < customers.size(); i++) {
+            String name = normalize(customers.get(i).getName());
+            Integer nameId = nameIds.get(name);
+            if (nameId == null) {
+                nameId = distinctNames.size();
+                nameIds.put(name, nameId);
+                distinctNames.add(name);
+                positions.add(new int[]{i});
+            } else {
+                int[] existing = positions.get(nameId);
+                int[] merged = Arrays.copyOf(existing, existing.length + 1);
+                merged[existing.length] = i;
+                positions.set(nameId, merged);
+            }
+        }
+        names = distinctNames.toArray(new String[0]);
+        positionsByNameId = positions.toArray(new int[0][]);
+
+        // The posting lists of all trigrams are stored back to back in one array: count the names per
+        // trigram first, then fill each list in name order so every list is sorted.
+        int[] counts = new int[16];
+        for (String name : names) {
+            for (long trigram : distinctTrigrams(name)) {
+                int trigramId = trigramIds.computeIfAbsent(trigram, t -> trigramIds.size());
+                if (trigramId >= counts.length) {
+                    counts = Arrays.copyOf(counts, counts.length * 2);
+                }
+                counts[trigramId]++;
+            }
+        }
+        postingListStarts = new int[trigramIds.size() + 1];
+        for (int trigramId = 0; trigramId < trigramIds.size(); trigramId++) {
+            postingListStarts[trigramId + 1] = postingListStarts[trigramId] + counts[trigramId];
+        }
+        postingLists = new int[postingListStarts[trigramIds.size()]];
+        int[] filled = Arrays.copyOf(postingListStarts, trigramIds.size());
+        for (int nameId = 0; nameId < names.length; nameId++) {
+            for (long trigram : distinctTrigrams(names[nameId])) {
+                postingLists[filled[trigramIds.get(trigram)]++] = nameId;
+            }
+        }
+
+        ArrayList<PrefixKey> keys = new ArrayList<>();
+        for (int nameId = 0; nameId < names.length; nameId++) {
+            String name = names[nameId];
+            for (int start = 0; start < name.length(); start++) {
+                if (start == 0 || name.charAt(start - 1) == ' ') {
+                    keys.add(new PrefixKey(start == 0 ? name : name.substring(start), nameId));
+                }
+            }
+        }
+        keys.sort(null);
+        prefixKeys = new String[keys.size()];
+        prefixNameIds = new int[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            prefixKeys[i] = keys.get(i).key;
+            prefixNameIds[i] = keys.get(i).nameId;
+        }
+    }
+
+    /**
+     * Normalizes a name for searching: accents removed, lower case and single spaces between words.
+     *
+     * @param name The name to normalize.
+     * @return The normalized name.
+     */
+    public static String normalize(String name) {
+        String decomposed = Normalizer.isNormalized(name, Normalizer.Form.NFD)
+                ? name : Normalizer.normalize(name, Normalizer.Form.NFD);
+        StringBuilder normalized = new StringBuilder(decomposed.length());
+        boolean space = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                space = normalized.length() > 0;
+                continue;
+            }
+            if (space) {
+                normalized.append(' ');
+                space = false;
+            }
+            normalized.append(c);
+        }
+        return normalized.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Finds customers whose name, or a word in their name, starts with a prefix.
+     *
+     * @param prefix The start of the name, ignoring case and accents.
+     * @param limit The largest number of customers to return.
+     * @return The first matching customers in alphabetical order, with full-name matches before word matches.
+     */
+    public List<Person> findByPrefix(String prefix, int limit) {
+        return customersAt(findPositionsByPrefix(prefix, limit));
+    }
+
+    private List<Integer> findPositionsByPrefix(String prefix, int limit) {
+        String key = normalize(prefix);
+        ArrayList<Integer> wholeNameMatches = new ArrayList<>();
+        ArrayList<Integer> wordMatches = new ArrayList<>();
+        HashSet<Integer> added = new HashSet<>();
+
+        for (int i = lowerBound(key); i < prefixKeys.length && prefixKeys[i].startsWith(key)
+                && wholeNameMatches.size() + wordMatches.size() < limit; i++) {
+            int nameId = prefixNameIds[i];
+            if (!added.add(nameId)) {
+                continue;
+            }
+            List<Integer> matches = names[nameId].startsWith(key) ? wholeNameMatches : wordMatches;
+            for (int position : positionsByNameId[nameId]) {
+                matches.add(position);
+            }
+        }
+        wholeNameMatches.addAll(wordMatches);
+        return wholeNameMatches.size() > limit ? new ArrayList<>(wholeNameMatches.subList(0, limit))
+                : wholeNameMatches;
+    }
+
+    /**
+     * Finds customers whose name is at most a number of edits (inserted, removed or changed letters)
+     * away from a name, ignoring case and accents.
+     *
+     * @param name The name to search for.
+     * @param maxDistance The largest number of edits allowed.
+     * @param limit The largest number of customers to return.
+     * @return Matching customers, closest first.
+     */
+    public List<Person> findSimilar(String name, int maxDistance, int limit) {
+        return customersAt(findPositionsSimilar(name, maxDistance, limit));
+    }
+
+    private List<Integer> findPositionsSimilar(String name, int maxDistance, int limit) {
+        String query = normalize(name);
+        long[] queryTrigrams = distinctTrigrams(query);
+        int requiredSharedTrigrams = Math.max(queryTrigrams.length - 3 * maxDistance, 1);
+
+        ArrayList<int[]> lists = new ArrayList<>();
+        for (long trigram : queryTrigrams) {
+            Integer trigramId = trigramIds.get(trigram);
+            if (trigramId != null) {
+                lists.add(new int[]{postingListStarts[trigramId], postingListStarts[trigramId + 1]});
+            }
+        }
+        lists.sort(Comparator.comparingInt(list -> list[1] - list[0]));
+
+        // A name sharing enough trigrams with the query must be in at least one of the rarest lists,
+        // so only those are scanned and the common ones are probed with a binary search.
+        int listsToScan = lists.size() - requiredSharedTrigrams + 1;
+        long[] seen = new long[(names.length + 63) / 64];
+        ArrayList<int[]> ranked = new ArrayList<>();
+        for (int list = 0; list < listsToScan; list++) {
+            for (int i = lists.get(list)[0]; i < lists.get(list)[1]; i++) {
+                int nameId = postingLists[i];
+                if (Math.abs(names[nameId].length() - query.length()) > maxDistance
+                        || (seen[nameId >>> 6] & (1L << nameId)) != 0) {
+                    continue;
+                }
+                seen[nameId >>> 6] |= 1L << nameId;
+                int shared = 0;
+                for (int other = 0; other < lists.size() && shared + lists.size() - other >= requiredSharedTrigrams;
+                        other++) {
+                    if (Arrays.binarySearch(postingLists, lists.get(other)[0], lists.get(other)[1], nameId) >= 0) {
+                        shared++;
+                    }
+                }
+                if (shared < requiredSharedTrigrams) {
+                    continue;
+                }
+                int distance = editDistance(query, names[nameId], maxDistance);
+                if (distance <= maxDistance) {
+                    ranked.add(new int[]{distance, -shared, nameId});
+                }
+            }
+        }
+        ranked.sort(Comparator.<int[]>comparingInt(r -> r[0]).thenComparingInt(r -> r[1])
+                .thenComparing(r -> names[r[2]]));
+
+        ArrayList<Integer> matches = new ArrayList<>();
+        for (int[] candidate : ranked) {
+            for (int position : positionsByNameId[candidate[2]]) {
+                if (matches.size() == limit) {
+                    return matches;
+                }
+                matches.add(position);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Suggests customers for something typed at the front desk: names starting with the input first,
+     * then names that are spelled almost the same.
+     *
+     * @param input The name or part of a name that was typed.
+     * @param limit The largest number of customers to return.
+     * @return Suggested customers, best match first, each register position once.
+     */
+    public List<Person> suggest(String input, int limit) {
+        List<Integer> suggestions = findPositionsByPrefix(input, limit);
+        if (suggestions.size() == limit) {
+            return customersAt(suggestions);
+        }
+        // Compared by position: a CompactCustomerList gives a new Person for every get.
+        HashSet<Integer> suggested = new HashSet<>(suggestions);
+        int maxDistance = normalize(input).length() <= 4 ? 1 : 2;
+        for (int position : findPositionsSimilar(input, maxDistance, limit)) {
+            if (suggestions.size() == limit) {
+                break;
+            }
+            if (suggested.add(position)) {
+                suggestions.add(position);
+            }
+        }
+        return customersAt(suggestions);
+    }
+
+    private List<Person> customersAt(List<Integer> positions) {
+        ArrayList<Person> found = new ArrayList<>(positions.size());
+        for (int position : positions) {
+            found.add(customers.get(position));
+        }
+        return found;
+    }
+
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = prefixKeys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (prefixKeys[middle].compareTo(key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static long[] distinctTrigrams(String name) {
+        String padded = "  " + name + " ";
+        long[] trigrams = new long[padded.length() - 2];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = (long) padded.charAt(i) << 32 | (long) padded.charAt(i + 1) << 16 | padded.charAt(i + 2);
+        }
+        Arrays.sort(trigrams);
+        int distinct = 0;
+        for (int i = 0; i < trigrams.length; i++) {
+            if (i == 0 || trigrams[i] != trigrams[i - 1]) {
+                trigrams[distinct++] = trigrams[i];
+            }
+        }
+        return distinct == trigrams.length ? trigrams : Arrays.copyOf(trigrams, distinct);
+    }
+
+    /**
+     * Computes the Levenshtein distance between two strings, giving up as soon as it is certain to be
+     * larger than a bound.
+     *
+     * @return The distance, or maxDistance + 1 if it is larger than maxDistance.
+     */
+    static int editDistance(String a, String b, int maxDistance) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMinimum = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+                rowMinimum = Math.min(rowMinimum, current[j]);
+            }
+            if (rowMinimum > maxDistance) {
+                return maxDistance + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length()], maxDistance + 1);
+    }
+
+    private static class PrefixKey implements Comparable<PrefixKey> {
+
+        private final String key;
+        private final int nameId;
+
+        PrefixKey(String key, int nameId) {
+            this.key = key;
+            this.nameId = nameId;
+        }
+
+        @Override
+        public int compareTo(PrefixKey other) {
+            int byKey = key.compareTo(other.key);
+            return byKey != 0 ? byKey : Integer.compare(nameId, other.nameId);
+        }
+    }
+}
@@ -1,59 +1,391 @@
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.net.URI;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
+import java.util.function.Consumer;
 
 public class RegisterPerson {
 
     private static final String FILE_PATH_CUSTOMERS = "src/Paying customers.txt";
+    private static final String FILE_PATH_CUSTOMERS_SNAPSHOT = "src/Paying customers.snapshot";
     private static final String FILE_PATH_WORKOUT_SHEET = "src/Workout sheet.txt";
-    private static final String INVALID_NUMBER = "invalid number";
-    private static final String INPUT_IS_EMPTY = "input is empty";
-    private static final String QUIT = "quit";
+    private static final String FILE_PATH_WORKOUT_SHEET_INDEX = "src/Workout sheet.index";
+    static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    static final String INVALID_NUMBER = "invalid number";
+    static final String INPUT_IS_EMPTY = "input is empty";
+    static final String QUIT = "quit";
+    static final String PROMPT = "Please enter the name or SSN (10 numbers) of the person who just entered the gym."
+            + "\n[Type '" + QUIT + "' to exit program]: ";
+    private static final int SUGGESTION_LIMIT = 5;
+    private static final boolean PARALLEL_LOADER = Boolean.getBoolean("gym.parallelLoader");
+    private static final boolean COMPACT_CUSTOMERS = Boolean.getBoolean("gym.compactCustomers");
+    private static final WorkoutSheetWriter.Durability WORKOUT_DURABILITY = WorkoutSheetWriter.Durability.valueOf(
+            System.getProperty("gym.workoutDurability", WorkoutSheetWriter.Durability.FLUSH_PER_RECORD.name()));
+    private static final boolean WATCH_CUSTOMERS = Boolean.parseBoolean(
+            System.getProperty("gym.watchCustomers", "true"));
+    private static final int WORKOUT_BATCH_SIZE = Integer.getInteger("gym.workoutBatchSize", 64);
+    private static final long WORKOUT_FLUSH_MILLIS = Long.getLong("gym.workoutFlushMillis", 1000);
+    private static final String STORE_DIRECTORY = System.getProperty("gym.store");
+    private static final String WORKOUT_SEGMENTS_DIRECTORY = System.getProperty("gym.workoutSegments");
+    private static final long WORKOUT_SEGMENT_BYTES = Long.getLong("gym.workoutSegmentBytes", 16 << 20);
+    private static final int WORKOUT_RETENTION_DAYS = Integer.getInteger("gym.workoutRetentionDays", 0);
+    private static final int BATCH_WORKOUT_BUFFER = 4096;
+    private static final int MAX_LOAD_ATTEMPTS = 5;
+    private static final long METRICS_INTERVAL_MILLIS = Long.getLong("gym.metricsIntervalMillis", 0);
+    private static final String METRICS_FILE = System.getProperty("gym.metricsFile");
     private boolean programIsRunning = true;
+    private CustomerFileState loadedCustomerFile;
     private Scanner scan;
+    private final MembershipCutoff membershipCutoff = MembershipCutoff.systemDefault();
+    private final CheckInMetrics metrics = CheckInMetrics.global();
     public boolean test = false;
 
     /**
-     * Main method to run the program
+     * Main method to run the program. Reading the console, looking up customers and printing the answers
+     * run as separate stages, and workouts are written in the background after the answer is shown.
      */
     void run() {
-        ArrayList<Person> customers = createCustomerListFromFile(FILE_PATH_CUSTOMERS);
-
-        while (programIsRunning) {
-            String input = enterNameOrSocialSecurityNumber(null);
-
-            if (!input.equals(INVALID_NUMBER) && !input.equals(INPUT_IS_EMPTY)) {
-                boolean isCustomer = checkIfPersonIsCustomer(input, customers);
-                boolean isPayingCustomer = false;
-                Person person = null;
-
-                if (isCustomer) {
-                    for (Person p : customers) {
-                        if (input.equalsIgnoreCase(p.getName()) ||
-                                input.equals(p.getSocialSecurityNumber())) {
-                            person = p;
-                            break;
-                        }
-                    }
+        GymStore store = openStore();
+        CustomerIndex customerIndex = new CustomerIndex(loadCustomers(store));
+        Closeable metricsReporter = startMetricsReporting();
 
-                    if (person != null && checkIfPersonIsPayingCustomer(person)) {
-                        isPayingCustomer = true;
-                        addWorkoutInFileForPayingCustomers(FILE_PATH_WORKOUT_SHEET, person);
+        try (metricsReporter;
+             CheckInService service = new CheckInService(customerIndex,
+                     new WorkoutLog(store != null ? store : openWorkoutSheet()))) {
+            // The watcher publishes to the service, so it is opened once the service exists.
+            CustomerFileWatcher watcher = store == null
+                    ? watchCustomerFile(customerIndex, service::setCustomerIndex) : null;
+            try (watcher) {
+                new ConsoleCheckIn(service, System.in, System.out).run();
+            }
+            programIsRunning = false;
+            System.out.println("Good bye!");
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println("Error while handling file: " + FILE_PATH_WORKOUT_SHEET);
+        }
+    }
+
+    /**
+     * Runs the check-in service behind a local HTTP server until 'quit' is typed in the console.
+     *
+     * @param port The port to listen on.
+     */
+    void runServer(int port) {
+        GymStore store = openStore();
+        List<Person> customers = loadCustomers(store);
+        Closeable metricsReporter = startMetricsReporting();
+
+        try (metricsReporter;
+             CheckInService service = store != null
+                ? new CheckInService(new CustomerIndex(customers), new WorkoutLog(store))
+                : createCheckInService(customers);
+             WorkoutHistoryIndex workoutHistory = store == null && WORKOUT_SEGMENTS_DIRECTORY == null
+                     ? openWorkoutHistory() : null) {
+            CustomerFileWatcher watcher = store == null
+                    ? watchCustomerFile(service.getCustomerIndex(), service::setCustomerIndex) : null;
+            try (watcher) {
+                CheckInServer server = new CheckInServer(service, port, workoutHistory);
+                server.start();
+
+                scan = new Scanner(System.in);
+                System.out.println("[Type '" + QUIT + "' to stop the server]: ");
+                while (scan.hasNextLine() && !scan.nextLine().trim().equalsIgnoreCase(QUIT)) {
+                    System.out.println("[Type '" + QUIT + "' to stop the server]: ");
+                }
+                server.stop();
+            }
+            System.out.println("Good bye!");
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println("Failed to start the check-in server on port " + port);
+        }
+    }
+
+    /**
+     * Runs one shard of a ShardedRegister: a check-in server over the customers of the shard, on any free
+     * port, until its input is closed or 'quit' is read.
+     *
+     * @param customersFilePath The customer file shared by all shards.
+     * @param shard The shard to serve.
+     * @param shards The number of shards.
+     * @param workoutSheetFilePath The workout sheet of this shard.
+     */
+    void runShard(String customersFilePath, int shard, int shards, String workoutSheetFilePath) {
+        CustomerIndex customers = new CustomerIndex(createCompactCustomerListFromFile(customersFilePath, shard, shards));
+        System.out.println("Shard " + shard + " of " + shards + " holds " + customers.size() + " customers");
+
+        try (CheckInService service = new CheckInService(customers, new WorkoutLog(new WorkoutSheetWriter(
+                Paths.get(workoutSheetFilePath), WORKOUT_DURABILITY, WORKOUT_BATCH_SIZE, WORKOUT_FLUSH_MILLIS)))) {
+            CheckInServer server = new CheckInServer(service, 0);
+            server.start();
+
+            scan = new Scanner(System.in);
+            while (scan.hasNextLine() && !scan.nextLine().trim().equalsIgnoreCase(QUIT)) {
+                // Keep serving until the router closes the input.
+            }
+            server.stop();
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println("Error while handling file: " + workoutSheetFilePath);
+        }
+    }
+
+    /**
+     * Runs the console check-in over a register split by SSN over several worker processes. Every shard
+     * writes the workouts of its customers to its own workout sheet next to the usual one.
+     *
+     * @param shards The number of worker processes.
+     */
+    void runSharded(int shards) {
+        try (ShardedRegister register = new ShardedRegister(Paths.get(FILE_PATH_CUSTOMERS),
+                Paths.get(FILE_PATH_WORKOUT_SHEET), shards)) {
+            System.out.println("Register split over " + shards + " shards");
+            while (programIsRunning) {
+                String input = enterNameOrSocialSecurityNumber(null);
+                if (programIsRunning && !input.equals(INVALID_NUMBER) && !input.equals(INPUT_IS_EMPTY)) {
+                    try {
+                        System.out.println(register.checkIn(input).getMessage());
+                    } catch (IOException e) {
+                        // Only this check-in fails; customers on the other shards can still check in.
+                        System.out.println("The check-in could not be completed. " + e.getMessage());
                     }
                 }
-                if (programIsRunning) {
-                    System.out.println(printIfPersonIsCustomer(input, isCustomer, isPayingCustomer));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println("Error while handling file: " + FILE_PATH_CUSTOMERS);
+        }
+    }
+
+    /**
+     * Sends lookups for every customer, and as many non-customers, to a running check-in server and prints
+     * the latency and throughput. Lookups are sent instead of check-ins, so no workouts are added to the
+     * server's workout sheet.
+     *
+     * @param port The port the server listens on.
+     * @param requests The total number of requests to send.
+     * @param concurrency The number of clients sending at the same time.
+     */
+    void runLoadGenerator(int port, int requests, int concurrency) {
+        if (requests < 1 || concurrency < 1) {
+            System.out.println("The load generator needs at least 1 request and 1 client");
+            return;
+        }
+        ArrayList<String> inputs = new ArrayList<>();
+        for (Person p : loadCustomers(FILE_PATH_CUSTOMERS, FILE_PATH_CUSTOMERS_SNAPSHOT)) {
+            inputs.add(p.getSocialSecurityNumber());
+            inputs.add(p.getName());
+            inputs.add("Guest " + inputs.size());
+        }
+        if (inputs.isEmpty()) {
+            inputs.add("Guest");
+        }
+
+        try {
+            LoadGenerator loadGenerator = new LoadGenerator(URI.create("http://localhost:" + port), inputs);
+            System.out.println(loadGenerator.run(requests, concurrency));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Creates a thread-safe check-in service over the customers that logs to the workout sheet.
+     *
+     * @param customers The customers that can check in.
+     * @return The check-in service. Closing it flushes and closes the workout sheet.
+     * @throws IOException If the workout sheet cannot be opened.
+     */
+    CheckInService createCheckInService(List<Person> customers) throws IOException {
+        return new CheckInService(new CustomerIndex(customers), new WorkoutLog(openWorkoutSheet()));
+    }
+
+    /**
+     * Starts writing the check-in metrics every -Dgym.metricsIntervalMillis milliseconds, to the file
+     * -Dgym.metricsFile or else to the console.
+     *
+     * @return A handle that stops the reports when closed, or null if reporting is turned off.
+     */
+    private Closeable startMetricsReporting() {
+        if (METRICS_INTERVAL_MILLIS <= 0) {
+            return null;
+        }
+        return metrics.startReporting(METRICS_INTERVAL_MILLIS, METRICS_FILE == null ? null : Paths.get(METRICS_FILE));
+    }
+
+    /**
+     * Opens the workout sheet file, or the directory of rolling workout sheet segments when started with
+     * -Dgym.workoutSegments=&lt;directory&gt;.
+     *
+     * @return The workout sheet to append workouts to.
+     * @throws IOException If the workout sheet cannot be opened.
+     */
+    private WorkoutSink openWorkoutSheet() throws IOException {
+        return openWorkoutSheet(WORKOUT_DURABILITY, WORKOUT_BATCH_SIZE, WORKOUT_FLUSH_MILLIS);
+    }
+
+    private WorkoutSink openWorkoutSheet(WorkoutSheetWriter.Durability durability, int batchSize, long flushMillis)
+            throws IOException {
+        if (WORKOUT_SEGMENTS_DIRECTORY != null) {
+            return new SegmentedWorkoutSheet(Paths.get(WORKOUT_SEGMENTS_DIRECTORY), WORKOUT_SEGMENT_BYTES,
+                    WORKOUT_RETENTION_DAYS, durability, batchSize, flushMillis);
+        }
+        return new WorkoutSheetWriter(Paths.get(FILE_PATH_WORKOUT_SHEET), durability, batchSize, flushMillis);
+    }
+
+    /**
+     * Checks in every line of a file of names and SSNs, for example a badge reader dump, and prints a summary.
+     * Workouts of paying customers are dated today and written to the workout sheet in one buffered pass.
+     *
+     * @param inputFilePath The file with one name or SSN per line.
+     */
+    void runBatch(String inputFilePath) {
+        GymStore store = openStore();
+        CustomerIndex customers = new CustomerIndex(loadCustomers(store));
+
+        try (WorkoutSink workoutSheet = store != null ? store
+                : openWorkoutSheet(WorkoutSheetWriter.Durability.GROUP_COMMIT, BATCH_WORKOUT_BUFFER, 0)) {
+            BatchCheckIn.Summary summary = new BatchCheckIn(customers).run(Paths.get(inputFilePath), workoutSheet,
+                    LocalDate.now());
+            System.out.println(summary);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println("Error while handling file: " + inputFilePath);
+        }
+    }
+
+    /**
+     * Exports the customers and workouts in the store to the text formats, so they can be read without it.
+     *
+     * @param customersFilePath The customer file to write.
+     * @param workoutSheetFilePath The workout sheet to write.
+     */
+    void runExport(String customersFilePath, String workoutSheetFilePath) {
+        try (GymStore store = openStore()) {
+            if (store == null) {
+                System.out.println("Start with -Dgym.store=<directory> to choose the store to export");
+                return;
+            }
+            store.exportCustomers(Paths.get(customersFilePath));
+            store.exportWorkouts(Paths.get(workoutSheetFilePath));
+            System.out.println("Exported '" + store.getPath() + "' to '" + customersFilePath + "' and '"
+                    + workoutSheetFilePath + "'");
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println("Error while handling store: " + STORE_DIRECTORY);
+        }
+    }
+
+    /**
+     * Opens the store given with -Dgym.store=&lt;directory&gt;. A new store is filled from the customer file
+     * and the workout sheet.
+     *
+     * @return The store, or null if no store is used or it cannot be opened.
+     */
+    private GymStore openStore() {
+        if (STORE_DIRECTORY == null) {
+            return null;
+        }
+        try {
+            GymStore store = new GymStore(Paths.get(STORE_DIRECTORY));
+            if (store.isEmpty()) {
+                int customers = Files.exists(Paths.get(FILE_PATH_CUSTOMERS))
+                        ? store.importCustomers(Paths.get(FILE_PATH_CUSTOMERS)) : 0;
+                int workouts = Files.exists(Paths.get(FILE_PATH_WORKOUT_SHEET))
+                        ? store.importWorkouts(Paths.get(FILE_PATH_WORKOUT_SHEET)) : 0;
+                store.flush();
+                System.out.println("Imported " + customers + " customers and " + workouts + " workouts into '"
+                        + STORE_DIRECTORY + "'");
+            }
+            return store;
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println("Error while handling store: " + STORE_DIRECTORY);
+            return null;
+        }
+    }
+
+    /**
+     * Opens the index of the workout sheet, building it if it is missing or out of date.
+     *
+     * @return The index, or null if the workout sheet cannot be read.
+     */
+    private WorkoutHistoryIndex openWorkoutHistory() {
+        try {
+            return new WorkoutHistoryIndex(Paths.get(FILE_PATH_WORKOUT_SHEET), Paths.get(FILE_PATH_WORKOUT_SHEET_INDEX));
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println("Error while handling file: " + FILE_PATH_WORKOUT_SHEET);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the register from the store, or from the customer file when no store is used. The state of the
+     * customer file that was read is remembered for the watcher; if the file keeps changing during the load
+     * it is not known, and the watcher loads the file again.
+     *
+     * @param store The store, or null.
+     * @return The customers.
+     */
+    private List<Person> loadCustomers(GymStore store) {
+        if (store == null) {
+            List<Person> customers = null;
+            loadedCustomerFile = null;
+            try {
+                for (int attempt = 1; attempt <= MAX_LOAD_ATTEMPTS && loadedCustomerFile == null; attempt++) {
+                    CustomerFileState before = CustomerFileState.read(Paths.get(FILE_PATH_CUSTOMERS));
+                    customers = loadCustomers(FILE_PATH_CUSTOMERS, FILE_PATH_CUSTOMERS_SNAPSHOT);
+                    if (before.isSameAs(CustomerFileState.read(Paths.get(FILE_PATH_CUSTOMERS)))) {
+                        loadedCustomerFile = before;
+                    }
                 }
+            } catch (IOException e) {
+                loadedCustomerFile = null;
             }
+            return customers != null ? customers : loadCustomers(FILE_PATH_CUSTOMERS, FILE_PATH_CUSTOMERS_SNAPSHOT);
+        }
+        try {
+            ArrayList<Person> customers = store.getCustomers();
+            return COMPACT_CUSTOMERS ? CompactCustomerList.copyOf(customers) : customers;
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println("Error while handling store: " + STORE_DIRECTORY);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Starts watching the customer file for new payments, unless started with -Dgym.watchCustomers=false.
+     *
+     * @param loadedIndex The register loaded from the customer file.
+     * @param listener Gets every new version of the register.
+     * @return The watcher, or null if watching is turned off or the file cannot be watched.
+     */
+    private CustomerFileWatcher watchCustomerFile(CustomerIndex loadedIndex, Consumer<CustomerIndex> listener) {
+        if (!WATCH_CUSTOMERS) {
+            return null;
+        }
+        try {
+            return new CustomerFileWatcher(Paths.get(FILE_PATH_CUSTOMERS), loadedIndex, loadedCustomerFile,
+                    listener);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println("Changes to file '" + FILE_PATH_CUSTOMERS + "' will not be seen until restart");
+            return null;
         }
     }
 
@@ -64,8 +396,7 @@ public class RegisterPerson {
      * @return A formatted string representation of the date.
      */
     public String formatDateToString(LocalDate date) {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-        return date.format(formatter);
+        return date.format(DATE_FORMATTER);
     }
 
     /**
@@ -75,8 +406,7 @@ public class RegisterPerson {
      * @return A LocalDate object representing the parsed date.
      */
     public LocalDate parseDateFromString(String date) {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-        return LocalDate.parse(date, formatter);
+        return LocalDate.parse(date, DATE_FORMATTER);
     }
 
     /**
@@ -96,6 +426,7 @@ public class RegisterPerson {
      * @return A list of Person objects created from the file data.
      */
     public ArrayList<Person> createCustomerListFromFile(String filePath) {
+        long start = System.nanoTime();
         ArrayList<Person> payingCustomersTemp = new ArrayList<>();
 
         try (BufferedReader bf = Files.newBufferedReader(Paths.get(filePath))) {
@@ -116,9 +447,126 @@ public class RegisterPerson {
             System.out.println("Unknown error with file '" + filePath + "' occurred");
             e.printStackTrace();
         }
+        metrics.customerFile.recordSince(start);
         return payingCustomersTemp;
     }
 
+    /**
+     * Reads customer information from a file into a compact list, keeping one copy of every distinct name
+     * and no Person per customer.
+     *
+     * @param filePath The path to the file containing customer information.
+     * @return A compact list of the customers in the file.
+     */
+    public CompactCustomerList createCompactCustomerListFromFile(String filePath) {
+        return createCompactCustomerListFromFile(filePath, 0, 1);
+    }
+
+    /**
+     * Reads the customers of one shard from a file into a compact list. The other customers are skipped
+     * as they are read, so only the shard is kept in memory.
+     *
+     * @param filePath The path to the file containing customer information.
+     * @param shard The shard to keep, as given by ShardedRegister.shardOf.
+     * @param shards The number of shards.
+     * @return A compact list of the customers of the shard, in file order.
+     */
+    public CompactCustomerList createCompactCustomerListFromFile(String filePath, int shard, int shards) {
+        long start = System.nanoTime();
+        CompactCustomerList customers = new CompactCustomerList();
+
+        try (BufferedReader bf = Files.newBufferedReader(Paths.get(filePath))) {
+            String line;
+            while ((line = bf.readLine()) != null) {
+                int comma = line.indexOf(',');
+                int nextComma = line.indexOf(',', comma + 1);
+                String SSN = line.substring(0, comma).trim();
+                String name = line.substring(comma + 1, nextComma < 0 ? line.length() : nextComma).trim();
+                String memberShipPaidDate = bf.readLine().trim();
+
+                if (shards == 1 || ShardedRegister.shardOf(SSN, shards) == shard) {
+                    customers.add(SSN, name, parseDateFromString(memberShipPaidDate).toEpochDay());
+                }
+            }
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            System.out.println("File '" + filePath + "' could not be found");
+            e.printStackTrace();
+        } catch (IOException e) {
+            System.out.println("Unknown error with file '" + filePath + "' occurred");
+            e.printStackTrace();
+        }
+        customers.trimToSize();
+        metrics.customerFile.recordSince(start);
+        return customers;
+    }
+
+    /**
+     * Reads customer information from a file by memory-mapping it and parsing it in parallel.
+     * Gives the same list as createCustomerListFromFile, but is much faster for large files.
+     *
+     * @param filePath The path to the file containing customer information.
+     * @return A list of Person objects created from the file data.
+     */
+    public ArrayList<Person> createCustomerListFromFileInParallel(String filePath) {
+        long start = System.nanoTime();
+        try {
+            return new CustomerFileLoader().load(Paths.get(filePath));
+        } catch (NoSuchFileException e) {
+            System.out.println("File '" + filePath + "' could not be found");
+            e.printStackTrace();
+        } catch (IOException e) {
+            System.out.println("Unknown error with file '" + filePath + "' occurred");
+            e.printStackTrace();
+        } finally {
+            metrics.customerFile.recordSince(start);
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Loads the customers from a binary snapshot if it is up to date with the text file. Otherwise the
+     * text file is read and a new snapshot is written for the next start.
+     *
+     * @param filePath The path to the file containing customer information.
+     * @param snapshotPath The path to the binary snapshot of that file.
+     * @return A list of Person objects created from the snapshot or the file data. It is a CompactCustomerList
+     * when started with -Dgym.compactCustomers=true.
+     */
+    public List<Person> loadCustomers(String filePath, String snapshotPath) {
+        long start = System.nanoTime();
+        CustomerSnapshot snapshot = new CustomerSnapshot(Paths.get(snapshotPath));
+        List<Person> customers = null;
+        if (Files.exists(Paths.get(filePath))) {
+            customers = COMPACT_CUSTOMERS
+                    ? snapshot.readCompact(Paths.get(filePath))
+                    : snapshot.read(Paths.get(filePath));
+        }
+
+        if (customers == null) {
+            customers = readCustomerFile(filePath);
+            if (!customers.isEmpty()) {
+                snapshot.write(Paths.get(filePath), customers);
+            }
+        }
+        metrics.customerLoad.recordSince(start);
+        return customers;
+    }
+
+    /**
+     * Reads the customer file with the loader chosen at start-up: in parallel with -Dgym.parallelLoader=true,
+     * and into a CompactCustomerList with -Dgym.compactCustomers=true.
+     *
+     * @param filePath The path to the file containing customer information.
+     * @return A list of Person objects created from the file data.
+     */
+    List<Person> readCustomerFile(String filePath) {
+        if (PARALLEL_LOADER) {
+            ArrayList<Person> customers = createCustomerListFromFileInParallel(filePath);
+            return COMPACT_CUSTOMERS ? CompactCustomerList.copyOf(customers) : customers;
+        }
+        return COMPACT_CUSTOMERS ? createCompactCustomerListFromFile(filePath) : createCustomerListFromFile(filePath);
+    }
+
     /**
      * Checks if a given name or social security number corresponds to a customer in the list.
      *
@@ -138,14 +586,58 @@ public class RegisterPerson {
         return check;
     }
 
+    /**
+     * Checks if a given name or social security number corresponds to a customer in an index.
+     *
+     * @param nameOrSocialSecurityNumber The name or social security number to check.
+     * @param customerIndex An index built from the list of customers.
+     * @return True if the name or SSN matches a customer; false otherwise.
+     */
+    public boolean checkIfPersonIsCustomer(String nameOrSocialSecurityNumber, CustomerIndex customerIndex) {
+        return customerIndex.findPosition(nameOrSocialSecurityNumber) >= 0;
+    }
+
+    /**
+     * Checks if a given name or social security number corresponds to a customer on any shard of a register.
+     *
+     * @param nameOrSocialSecurityNumber The name or social security number to check.
+     * @param shardedRegister A register split over several worker processes.
+     * @return True if the name or SSN matches a customer; false otherwise.
+     * @throws IOException If a shard cannot be reached.
+     */
+    public boolean checkIfPersonIsCustomer(String nameOrSocialSecurityNumber, ShardedRegister shardedRegister)
+            throws IOException {
+        return shardedRegister.isCustomer(nameOrSocialSecurityNumber);
+    }
+
+    /**
+     * Suggests customers with a name that starts with, or is spelled almost like, the input.
+     *
+     * @param input The name that did not match a customer.
+     * @param customerIndex An index built from the list of customers.
+     * @return A message listing the suggested customers best match first, or an empty string if there are none.
+     */
+    public String suggestCustomers(String input, CustomerIndex customerIndex) {
+        List<Person> suggestions = customerIndex.getNameSearchIndex().suggest(input, SUGGESTION_LIMIT);
+        if (suggestions.isEmpty()) {
+            return "";
+        }
+        StringBuilder message = new StringBuilder("Did you mean:");
+        for (Person p : suggestions) {
+            message.append("\n  ").append(p.getName()).append(" (").append(p.getSocialSecurityNumber()).append(")");
+        }
+        return message.toString();
+    }
+
     /**
      * Checks if a person is a paying customer based on their membership payment date.
+     * The cutoff date is computed once per day.
      *
      * @param customer The Person object to check.
      * @return True if the customer is a paying customer; false otherwise.
      */
     public boolean checkIfPersonIsPayingCustomer(Person customer) {
-        return (customer.getMemberShipPaidDate().isAfter(LocalDate.now().minusYears(1)));
+        return membershipCutoff.isPaying(customer.getMemberShipPaidDate());
     }
 
     /**
@@ -155,7 +647,16 @@ public class RegisterPerson {
      * @return True if the input contains only numeric characters; false otherwise.
      */
     public boolean checkIfInputIsOnlyNumbers(String input) {
-        return input.matches("\\d+");
+        if (input.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -175,15 +676,29 @@ public class RegisterPerson {
      * @return The validated input or a constant indicating an error (e.g., INPUT_IS_EMPTY, INVALID_NUMBER).
      */
     public String validateInput(String input) {
-        if (input.isEmpty()) {
+        String classified = classifyInput(input);
+        if (classified.equals(INPUT_IS_EMPTY)) {
             System.out.println("Person or SSN input cannot be empty");
-            return INPUT_IS_EMPTY;
-        } else if (checkIfInputIsOnlyNumbers(input)) {
-            if (!checkIfSocialSecurityInputIsLongEnough(input)) {
-                System.out.println("The SSN you have entered is not the correct length. 10 numbers are required");
+        } else if (classified.equals(INVALID_NUMBER)) {
+            System.out.println("The SSN you have entered is not the correct length. 10 numbers are required");
+        }
+        return classified;
+    }
 
-                return INVALID_NUMBER;
-            }
+    /**
+     * Validates user input the same way as validateInput, but without printing anything.
+     * Safe to call from several threads at once.
+     *
+     * @param input The input to validate.
+     * @return The validated input or a constant indicating an error (e.g., INPUT_IS_EMPTY, INVALID_NUMBER).
+     */
+    public String classifyInput(String input) {
+        if (input.isEmpty()) {
+            metrics.emptyInputs.increment();
+            return INPUT_IS_EMPTY;
+        } else if (checkIfInputIsOnlyNumbers(input) && !checkIfSocialSecurityInputIsLongEnough(input)) {
+            metrics.invalidNumbers.increment();
+            return INVALID_NUMBER;
         }
         return input;
     }
@@ -198,14 +713,15 @@ public class RegisterPerson {
         String input;
 
         if (!test) {
-            scan = new Scanner(System.in);
-            System.out.println("Please enter the name or SSN (10 numbers) of the person who just entered the gym." +
-                    "\n[Type '" + QUIT + "' to exit program]: ");
+            if (scan == null) {
+                scan = new Scanner(System.in);
+            }
+            System.out.println(PROMPT);
         } else {
             scan = new Scanner(testString);
         }
 
-        input = scan.nextLine().trim();
+        input = scan.hasNextLine() ? scan.nextLine().trim() : QUIT;
 
         if (input.equalsIgnoreCase(QUIT)) {
             System.out.println("Good bye!");
@@ -259,6 +775,7 @@ public class RegisterPerson {
      * @param person The paying customer for whom the workout entry is created.
      */
     public void addWorkoutInFileForPayingCustomers(String workOutFilePath, Person person) {
+        long start = System.nanoTime();
         Path path = Paths.get(workOutFilePath);
 
         if (!Files.exists(path)){
@@ -277,6 +794,6 @@ public class RegisterPerson {
             e.printStackTrace();
             System.out.println("Error while handling file: " + workOutFilePath);
         }
-
+        metrics.workoutAppend.recordSince(start);
     }
 }
@@ -0,0 +1,181 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The customers of a register whose membership was renewed in place in the customer file since it was last
+ * indexed in full. A renewal only changes the paid date, so the name and SSN indexes of the register stay
+ * valid and only the customer at a position is replaced.
+ * <p>
+ * Like AppendedCustomers, an instance is one version of a store that only grows: renewals are written before
+ * the version that shows them is published, and are chained by position in the order they were made, so a
+ * reader stops at the first renewal made after its version. The latest renewal of a position wins.
+ */
+public class RenewedCustomers {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Store store;
+    private final int count;
+    private final int[] positions;
+    private final Person[] customers;
+    private final int[] expiryDays;
+    private final int[] heads;
+    private final int[] next;
+
+    public RenewedCustomers() {
+        this(new Store(), 0);
+    }
+
+    private RenewedCustomers(Store store, int count) {
+        this.store = store;
+        this.count = count;
+        this.positions = store.positions;
+        this.customers = store.customers;
+        this.expiryDays = store.expiryDays;
+        this.heads = store.heads;
+        this.next = store.next;
+    }
+
+    /**
+     * Gives a new version with more renewals. This version is not changed.
+     *
+     * @param renewedPositions The positions of the renewed customers in the register.
+     * @param renewed The renewed customers, with the same SSN and name as before and a new paid date.
+     * @return The new version.
+     */
+    public RenewedCustomers renew(List<Integer> renewedPositions, List<Person> renewed) {
+        synchronized (store) {
+            Store target = store.size == count ? store : store.copy(count);
+            for (int i = 0; i < renewed.size(); i++) {
+                target.add(renewedPositions.get(i), renewed.get(i));
+            }
+            return new RenewedCustomers(target, target.size);
+        }
+    }
+
+    /**
+     * @return The latest renewal of the customer at a position, or null if it was not renewed.
+     */
+    public Person get(int position) {
+        int renewal = find(position);
+        return renewal < 0 ? null : customers[renewal];
+    }
+
+    /**
+     * @return The day the renewed membership of a customer expires, or Integer.MIN_VALUE if it was not renewed.
+     */
+    public int findExpiryDay(int position) {
+        int renewal = find(position);
+        return renewal < 0 ? Integer.MIN_VALUE : expiryDays[renewal];
+    }
+
+    /**
+     * Gives the renewed customers whose new membership expires between two days, each position once.
+     *
+     * @return The expiry day shifted 32 bits left, or'ed with the position, in no particular order.
+     */
+    public long[] findExpiringBetween(long firstDay, long lastDay) {
+        long[] expiring = new long[count];
+        int found = 0;
+        for (int i = 0; i < count; i++) {
+            if (expiryDays[i] >= firstDay && expiryDays[i] <= lastDay && find(positions[i]) == i) {
+                expiring[found++] = (long) expiryDays[i] << 32 | positions[i];
+            }
+        }
+        return Arrays.copyOf(expiring, found);
+    }
+
+    /**
+     * Applies the renewals to a copy of the register, oldest first so the latest one wins.
+     *
+     * @param register The customers of the register, in register order.
+     */
+    public void applyTo(List<Person> register) {
+        for (int i = 0; i < count; i++) {
+            register.set(positions[i], customers[i]);
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    private int find(int position) {
+        int latest = -1;
+        for (int i = heads[bucket(position, heads)] - 1; i >= 0 && i < count; i = next[i] - 1) {
+            if (positions[i] == position) {
+                latest = i;
+            }
+        }
+        return latest;
+    }
+
+    private static int bucket(int position, int[] heads) {
+        int h = position * 0x9E3779B9;
+        return (h ^ h >>> 16) & (heads.length - 1);
+    }
+
+    /**
+     * The growing arrays shared by the versions, chained by position + 1 like those of AppendedCustomers.
+     */
+    private static class Store {
+
+        private int[] positions;
+        private Person[] customers;
+        private int[] expiryDays;
+        private int[] heads;
+        private int[] tails;
+        private int[] next;
+        private int size;
+
+        Store() {
+            allocate(INITIAL_CAPACITY);
+        }
+
+        Store copy(int count) {
+            Store copy = new Store();
+            for (int i = 0; i < count; i++) {
+                copy.add(positions[i], customers[i]);
+            }
+            return copy;
+        }
+
+        void add(int position, Person renewed) {
+            if (size == positions.length) {
+                int[] oldPositions = positions;
+                Person[] oldCustomers = customers;
+                int oldSize = size;
+                allocate(positions.length * 2);
+                size = 0;
+                for (int i = 0; i < oldSize; i++) {
+                    place(oldPositions[i], oldCustomers[i]);
+                }
+            }
+            place(position, renewed);
+        }
+
+        private void place(int position, Person renewed) {
+            int renewal = size;
+            positions[renewal] = position;
+            customers[renewal] = renewed;
+            expiryDays[renewal] = Math.toIntExact(MembershipTimeline.expiryDay(renewed.getMemberShipPaidDate()));
+            int bucket = bucket(position, heads);
+            if (tails[bucket] == 0) {
+                heads[bucket] = renewal + 1;
+            } else {
+                next[tails[bucket] - 1] = renewal + 1;
+            }
+            tails[bucket] = renewal + 1;
+            size++;
+        }
+
+        private void allocate(int capacity) {
+            positions = new int[capacity];
+            customers = new Person[capacity];
+            expiryDays = new int[capacity];
+            heads = new int[capacity];
+            tails = new int[capacity];
+            next = new int[capacity];
+        }
+    }
+}
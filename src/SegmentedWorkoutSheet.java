@@ -0,0 +1,381 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the workout sheet as a directory of small segments instead of one file that grows forever.
+ * <p>
+ * Entries are appended to an active segment, which is a workout sheet of its own. A new segment is started
+ * on every new day and when the active one reaches a size limit. Closed segments are compressed with gzip on
+ * a background thread, and segments older than the retention period are deleted. A manifest lists every
+ * segment with its date and size, and history queries only open the segments in the date range asked for.
+ * <p>
+ * On open, the manifest is rebuilt from the files in the directory, so segments left uncompressed by a
+ * crash are compressed again and a compression that was cut off is finished or redone.
+ */
+public class SegmentedWorkoutSheet implements WorkoutSink {
+
+    private static final String MANIFEST = "manifest.txt";
+    private static final String COMPRESSED_SUFFIX = ".gz";
+    private static final Pattern SEGMENT_NAME = Pattern.compile(
+            "workouts-(\\d{4}-\\d{2}-\\d{2})-(\\d{3,})\\.txt(\\.gz)?(\\.tmp)?");
+
+    private final RegisterPerson registerPerson = new RegisterPerson();
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final int retentionDays;
+    private final WorkoutSheetWriter.Durability durability;
+    private final int maxBatchSize;
+    private final long maxDelayMillis;
+    private final ArrayList<Segment> segments = new ArrayList<>();
+    private final ExecutorService compressor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "workout-segment-compressor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Segment activeSegment;
+    private WorkoutSheetWriter activeWriter;
+    private boolean closed;
+
+    /**
+     * Opens a segmented workout sheet with 16 MB segments that are kept forever and flushed every record.
+     *
+     * @param directory The directory of the segments. It is created if it does not exist.
+     * @throws IOException If the directory cannot be read.
+     */
+    public SegmentedWorkoutSheet(Path directory) throws IOException {
+        this(directory, 16 << 20, 0, WorkoutSheetWriter.Durability.FLUSH_PER_RECORD, 1, 0);
+    }
+
+    /**
+     * Opens a segmented workout sheet.
+     *
+     * @param directory The directory of the segments. It is created if it does not exist.
+     * @param maxSegmentBytes The size that makes a new segment start.
+     * @param retentionDays The number of days segments are kept, or 0 to keep them forever.
+     * @param durability How soon appended entries must reach the active segment.
+     * @param maxBatchSize The number of entries that triggers a write when batching.
+     * @param maxDelayMillis The longest time a batched entry may wait before it is written.
+     * @throws IOException If the directory cannot be read.
+     */
+    public SegmentedWorkoutSheet(Path directory, long maxSegmentBytes, int retentionDays,
+                                 WorkoutSheetWriter.Durability durability, int maxBatchSize, long maxDelayMillis)
+            throws IOException {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.retentionDays = retentionDays;
+        this.durability = durability;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMillis = maxDelayMillis;
+        Files.createDirectories(directory);
+
+        scanSegments();
+        Segment today = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        for (Segment segment : segments) {
+            if (!segment.compressed && !(segment == today && segment.date.equals(LocalDate.now()))) {
+                compressLater(segment);
+            }
+        }
+        writeManifest();
+    }
+
+    /**
+     * Appends a workout entry to the active segment, starting a new segment first if the date changed or
+     * the active one is full.
+     *
+     * @param person The paying customer for whom the workout entry is created.
+     * @param date The date of the workout.
+     * @throws IOException If the entry could not be written.
+     */
+    @Override
+    public synchronized void append(Person person, LocalDate date) throws IOException {
+        if (closed) {
+            throw new IOException("Workout sheet '" + directory + "' is closed");
+        }
+        if (activeSegment == null || !activeSegment.date.equals(date) || activeSegment.bytes >= maxSegmentBytes) {
+            roll(date);
+        }
+        activeWriter.append(person, date);
+        activeSegment.bytes += 2 + person.getSocialSecurityNumber().length() + 2
+                + person.getName().getBytes(StandardCharsets.UTF_8).length + 10;
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        if (activeWriter != null) {
+            activeWriter.flush();
+        }
+    }
+
+    /**
+     * Reads the workouts from one date up to and including another, opening only the segments of those days.
+     *
+     * @param from The first date to include.
+     * @param to The last date to include.
+     * @return One {SSN, name, date} array per workout, in the order they were logged.
+     * @throws IOException If a segment cannot be read.
+     */
+    public List<String[]> read(LocalDate from, LocalDate to) throws IOException {
+        ArrayList<String[]> workouts = new ArrayList<>();
+        for (Path segment : findSegments(from, to)) {
+            if (!Files.exists(segment)) {
+                segment = segment.resolveSibling(segment.getFileName() + COMPRESSED_SUFFIX);
+            }
+            try (InputStream in = segment.getFileName().toString().endsWith(COMPRESSED_SUFFIX)
+                    ? new GZIPInputStream(Files.newInputStream(segment)) : Files.newInputStream(segment);
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int comma = line.indexOf(',');
+                    String date = comma < 0 ? null : reader.readLine();
+                    if (date != null) {
+                        workouts.add(new String[]{line.substring(0, comma).trim(), line.substring(comma + 1).trim(),
+                                date.trim()});
+                    }
+                }
+            }
+        }
+        return workouts;
+    }
+
+    /**
+     * Finds the segments with workouts in a date range, flushing the active segment first.
+     *
+     * @param from The first date to include.
+     * @param to The last date to include.
+     * @return The paths of the segments in date order.
+     * @throws IOException If the active segment could not be flushed.
+     */
+    public synchronized List<Path> findSegments(LocalDate from, LocalDate to) throws IOException {
+        flush();
+        ArrayList<Path> found = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (!segment.date.isBefore(from) && !segment.date.isAfter(to)) {
+                found.add(segment.path());
+            }
+        }
+        return found;
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Waits for the segments that are being compressed.
+     *
+     * @param timeoutMillis The longest time to wait.
+     * @return True if all segments queued so far have been compressed; false if the time ran out.
+     * @throws InterruptedException If the thread was interrupted while waiting.
+     */
+    public boolean awaitCompression(long timeoutMillis) throws InterruptedException {
+        try {
+            compressor.submit(() -> { }).get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (ExecutionException | TimeoutException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public Path getPath() {
+        return directory;
+    }
+
+    /**
+     * Closes the active segment and waits for the segments that are being compressed. The active segment
+     * is left uncompressed, so it can be appended to after a restart on the same day.
+     *
+     * @throws IOException If the active segment could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (activeWriter != null) {
+                activeWriter.close();
+            }
+            writeManifest();
+        }
+        compressor.shutdown();
+        try {
+            compressor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void roll(LocalDate date) throws IOException {
+        if (activeWriter != null) {
+            activeWriter.close();
+            compressLater(activeSegment);
+        }
+
+        Segment last = null;
+        for (Segment segment : segments) {
+            if (segment.date.equals(date)) {
+                last = segment;
+            }
+        }
+        if (last != null && !last.sealed && last.bytes < maxSegmentBytes) {
+            activeSegment = last;
+        } else {
+            activeSegment = new Segment(date, last == null ? 0 : last.number + 1, false, 0);
+            segments.add(activeSegment);
+            segments.sort(null);
+        }
+        activeWriter = new WorkoutSheetWriter(activeSegment.path(), durability, maxBatchSize, maxDelayMillis);
+        activeSegment.bytes = Files.size(activeSegment.path());
+
+        deleteExpiredSegments(date);
+        writeManifest();
+    }
+
+    private void compressLater(Segment segment) {
+        segment.sealed = true;
+        compressor.execute(() -> {
+            try {
+                compress(segment);
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.out.println("Error while handling file: " + segment.path());
+            }
+        });
+    }
+
+    /**
+     * Compresses a closed segment next to it, moves the compressed file into place and deletes the original.
+     */
+    private void compress(Segment segment) throws IOException {
+        Path original = segment.path();
+        Path compressed = original.resolveSibling(original.getFileName() + COMPRESSED_SUFFIX);
+        Path temporary = original.resolveSibling(compressed.getFileName() + ".tmp");
+        if (!Files.exists(original)) {
+            return;
+        }
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temporary))) {
+            Files.copy(original, out);
+        }
+        Files.move(temporary, compressed, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        synchronized (this) {
+            Files.delete(original);
+            segment.compressed = true;
+            segment.bytes = Files.size(compressed);
+            deleteExpiredSegments(LocalDate.now());
+            writeManifest();
+        }
+    }
+
+    private void deleteExpiredSegments(LocalDate today) throws IOException {
+        if (retentionDays <= 0) {
+            return;
+        }
+        LocalDate oldestKept = today.minusDays(retentionDays - 1);
+        for (Segment segment : new ArrayList<>(segments)) {
+            if (segment.date.isBefore(oldestKept) && segment.compressed) {
+                Files.deleteIfExists(segment.path());
+                segments.remove(segment);
+            }
+        }
+    }
+
+    /**
+     * Finds the segments in the directory. A segment that exists both compressed and uncompressed was
+     * compressed completely before a crash, so the uncompressed copy is deleted; unfinished compressed
+     * files are deleted. Other files in the directory are left alone.
+     */
+    private void scanSegments() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "workouts-*")) {
+            for (Path file : files) {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (!matcher.matches()) {
+                    continue;
+                }
+                if (matcher.group(4) != null) {
+                    Files.delete(file);
+                    continue;
+                }
+                boolean compressed = matcher.group(3) != null;
+                Path original = compressed ? file.resolveSibling(file.getFileName().toString()
+                        .replace(COMPRESSED_SUFFIX, "")) : file;
+                if (compressed && Files.exists(original)) {
+                    Files.delete(original);
+                }
+                if (!compressed && Files.exists(file.resolveSibling(file.getFileName() + COMPRESSED_SUFFIX))) {
+                    continue;
+                }
+                segments.add(new Segment(registerPerson.parseDateFromString(matcher.group(1)),
+                        Integer.parseInt(matcher.group(2)), compressed, Files.size(file)));
+            }
+        }
+        segments.removeIf(segment -> !Files.exists(segment.path()));
+        segments.sort(null);
+    }
+
+    /**
+     * Lists every segment as "file name, date, bytes" in date order. The list is written next to the
+     * manifest and moved into place.
+     */
+    private synchronized void writeManifest() throws IOException {
+        Path temporary = directory.resolve(MANIFEST + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary)) {
+            for (Segment segment : segments) {
+                writer.write(segment.path().getFileName() + ", " + registerPerson.formatDateToString(segment.date)
+                        + ", " + segment.bytes + "\n");
+            }
+        }
+        Files.move(temporary, directory.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private class Segment implements Comparable<Segment> {
+
+        private final LocalDate date;
+        private final int number;
+        private boolean compressed;
+        private boolean sealed;
+        private long bytes;
+
+        Segment(LocalDate date, int number, boolean compressed, long bytes) {
+            this.date = date;
+            this.number = number;
+            this.compressed = compressed;
+            this.sealed = compressed;
+            this.bytes = bytes;
+        }
+
+        Path path() {
+            return directory.resolve(String.format("workouts-%s-%03d.txt%s", registerPerson.formatDateToString(date),
+                    number, compressed ? COMPRESSED_SUFFIX : ""));
+        }
+
+        @Override
+        public int compareTo(Segment other) {
+            int byDate = date.compareTo(other.date);
+            return byDate != 0 ? byDate : Integer.compare(number, other.number);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A customer register split by social security number over several worker processes on this machine, so no
+ * process has to hold the whole chain's membership base.
+ * <p>
+ * Every worker reads the same customer file, keeps only the customers whose SSN hashes to its shard and
+ * answers check-ins over HTTP as a CheckInServer. Each worker writes the workouts of its customers to its own
+ * workout sheet. This class is the router: a check-in by SSN goes straight to the shard that owns it, and a
+ * check-in by name is first looked up on every shard. If customers on several shards share the name, the
+ * one on the lowest shard checks in.
+ * <p>
+ * A shard that cannot be reached only fails the check-ins it is needed for: an SSN it owns, or a name that
+ * was not found on a lower shard. The other shards keep answering.
+ * <p>
+ * The workers stop when the router is closed, or when the router process dies and their input closes.
+ */
+public class ShardedRegister implements Closeable {
+
+    static final String SHARD_COMMAND = "shard";
+
+    private static final Pattern LISTENING = Pattern.compile("http://localhost:(\\d+)");
+    private static final long START_TIMEOUT_SECONDS = 60;
+    private static final long STOP_TIMEOUT_SECONDS = 10;
+
+    private final RegisterPerson rules = new RegisterPerson();
+    private final List<Process> workers = new ArrayList<>();
+    private final URI[] shardUris;
+    private final HttpClient client;
+
+    /**
+     * Starts one worker process per shard and waits until all of them are listening.
+     *
+     * @param customerFile The customer file every worker reads its shard from.
+     * @param workoutSheet The workout sheet path; shard n writes to the same path with "-n" before the extension.
+     * @param shards The number of worker processes.
+     * @throws IOException If a worker cannot be started, or stops or takes more than a minute before it listens.
+     */
+    public ShardedRegister(Path customerFile, Path workoutSheet, int shards) throws IOException {
+        this.shardUris = new URI[shards];
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        try {
+            for (int shard = 0; shard < shards; shard++) {
+                workers.add(startWorker(customerFile, shardPath(workoutSheet, shard), shard, shards));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(START_TIMEOUT_SECONDS);
+            for (int shard = 0; shard < shards; shard++) {
+                shardUris[shard] = awaitListening(workers.get(shard), shard, deadline);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Finds the shard that owns a social security number. Any string can be hashed, but 10 digit numbers
+     * are spread by their value.
+     *
+     * @param socialSecurityNumber The social security number.
+     * @param shards The number of shards.
+     * @return The shard, from 0 to shards - 1.
+     */
+    public static int shardOf(String socialSecurityNumber, int shards) {
+        long packed = SocialSecurityNumberIndex.pack(socialSecurityNumber);
+        long hash = packed == SocialSecurityNumberIndex.NOT_A_SOCIAL_SECURITY_NUMBER
+                ? socialSecurityNumber.hashCode() : packed * 0x9E3779B97F4A7C15L;
+        return (int) Math.floorMod(hash ^ (hash >>> 32), (long) shards);
+    }
+
+    /**
+     * Gives the file of a shard, the path with "-shard" added before the extension.
+     *
+     * @param path The path shared by all shards, for example "Workout sheet.txt".
+     * @param shard The shard.
+     * @return The path of the shard, for example "Workout sheet-0.txt".
+     */
+    public static Path shardPath(Path path, int shard) {
+        String fileName = path.getFileName().toString();
+        int extension = fileName.lastIndexOf('.');
+        return path.resolveSibling(extension < 0 ? fileName + "-" + shard
+                : fileName.substring(0, extension) + "-" + shard + fileName.substring(extension));
+    }
+
+    /**
+     * Checks in a person by name or social security number on the shard that owns the customer. A paying
+     * customer gets a workout written by that shard.
+     *
+     * @param nameOrSocialSecurityNumber The name or social security number entered at the terminal.
+     * @return The result of the check-in. It has no Person, since the customer is held by a worker.
+     * @throws IOException If the shard the check-in needs cannot be reached. Other check-ins still work.
+     */
+    public CheckInResult checkIn(String nameOrSocialSecurityNumber) throws IOException {
+        String input = rules.classifyInput(nameOrSocialSecurityNumber.trim());
+        CheckInResult invalidInput = CheckInService.checkInput(input);
+        if (invalidInput != null) {
+            return invalidInput;
+        }
+
+        boolean isSocialSecurityNumber = SocialSecurityNumberIndex.pack(input)
+                != SocialSecurityNumberIndex.NOT_A_SOCIAL_SECURITY_NUMBER;
+        int shard = isSocialSecurityNumber ? shardOf(input, shardUris.length) : findShard(input);
+        if (shard < 0) {
+            return new CheckInResult(input, CheckInResult.Status.NOT_A_CUSTOMER, null,
+                    rules.printIfPersonIsCustomer(input, false, false));
+        }
+        return await(send(shard, CheckInServer.CHECK_IN_PATH, input), shard, input);
+    }
+
+    /**
+     * Checks if a name or social security number belongs to a customer on any shard, without checking in.
+     *
+     * @param nameOrSocialSecurityNumber The name or social security number to check.
+     * @return True if the input matches a customer; false otherwise.
+     * @throws IOException If a shard cannot be reached.
+     */
+    public boolean isCustomer(String nameOrSocialSecurityNumber) throws IOException {
+        return findShard(nameOrSocialSecurityNumber) >= 0;
+    }
+
+    public int getShardCount() {
+        return shardUris.length;
+    }
+
+    public URI getShardUri(int shard) {
+        return shardUris[shard];
+    }
+
+    /**
+     * Stops the workers, waiting for them to write their queued workouts.
+     */
+    @Override
+    public void close() {
+        for (Process worker : workers) {
+            try {
+                worker.getOutputStream().close();
+            } catch (IOException e) {
+                worker.destroy();
+            }
+        }
+        for (Process worker : workers) {
+            try {
+                if (!worker.waitFor(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    worker.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                worker.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * @return The shard with the customer, or -1 if no shard has one. An SSN is only looked for on its own shard.
+     * A name found on a shard is found even if a higher shard is unavailable, since the lowest shard wins.
+     */
+    private int findShard(String input) throws IOException {
+        if (SocialSecurityNumberIndex.pack(input) != SocialSecurityNumberIndex.NOT_A_SOCIAL_SECURITY_NUMBER) {
+            int shard = shardOf(input, shardUris.length);
+            return await(send(shard, CheckInServer.LOOKUP_PATH, input), shard, input).isCustomer() ? shard : -1;
+        }
+
+        ArrayList<CompletableFuture<HttpResponse<String>>> lookups = new ArrayList<>(shardUris.length);
+        for (int shard = 0; shard < shardUris.length; shard++) {
+            lookups.add(send(shard, CheckInServer.LOOKUP_PATH, input));
+        }
+        for (int shard = 0; shard < shardUris.length; shard++) {
+            if (await(lookups.get(shard), shard, input).isCustomer()) {
+                return shard;
+            }
+        }
+        return -1;
+    }
+
+    private CompletableFuture<HttpResponse<String>> send(int shard, String path, String input) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(shardUris[shard].resolve(path) + "?input="
+                        + URLEncoder.encode(input, StandardCharsets.UTF_8)))
+                .GET()
+                .build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private CheckInResult await(CompletableFuture<HttpResponse<String>> request, int shard, String input)
+            throws IOException {
+        HttpResponse<String> response;
+        try {
+            response = request.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for shard " + shard, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Shard " + shard + " at " + shardUris[shard] + " is unavailable", e.getCause());
+        }
+        String status = response.headers().firstValue(CheckInServer.STATUS_HEADER).orElse(null);
+        if (status == null) {
+            throw new IOException("Shard " + shard + " answered " + response.statusCode() + ": " + response.body());
+        }
+        return new CheckInResult(input, CheckInResult.Status.valueOf(status), null, response.body());
+    }
+
+    private static Process startWorker(Path customerFile, Path workoutSheet, int shard, int shards)
+            throws IOException {
+        ArrayList<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("gym.")) {
+                command.add("-D" + name + "=" + System.getProperty(name));
+            }
+        }
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"), Main.class.getName(), SHARD_COMMAND,
+                customerFile.toString(), String.valueOf(shard), String.valueOf(shards), workoutSheet.toString()));
+        return new ProcessBuilder(command).redirectErrorStream(true).start();
+    }
+
+    /**
+     * Waits until a worker says which port it listens on, while its output is copied to the console on a
+     * daemon thread. A worker that has not said so by the deadline is destroyed.
+     *
+     * @param deadline The System.nanoTime() by which the worker must listen.
+     */
+    static URI awaitListening(Process worker, int shard, long deadline) throws IOException {
+        BufferedReader output = new BufferedReader(new InputStreamReader(worker.getInputStream(),
+                StandardCharsets.UTF_8));
+        CompletableFuture<URI> listening = new CompletableFuture<>();
+        Thread copier = new Thread(() -> copyOutput(output, shard, listening), "shard-" + shard + "-output");
+        copier.setDaemon(true);
+        copier.start();
+
+        URI uri;
+        try {
+            uri = listening.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            worker.destroyForcibly();
+            throw new IOException("Shard " + shard + " did not start listening in time", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            worker.destroyForcibly();
+            throw new IOException("Interrupted while waiting for shard " + shard + " to start", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Shard " + shard + " could not be started", e.getCause());
+        }
+        if (uri == null) {
+            throw new IOException("Shard " + shard + " stopped before it started listening");
+        }
+        return uri;
+    }
+
+    /**
+     * Copies the output of a worker to the console, except the line that says which port it listens on,
+     * which completes a future instead. The future gets null if the worker stops before that.
+     */
+    private static void copyOutput(BufferedReader output, int shard, CompletableFuture<URI> listening) {
+        try (output) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                Matcher matcher = LISTENING.matcher(line);
+                if (!listening.isDone() && matcher.find()) {
+                    listening.complete(URI.create("http://localhost:" + matcher.group(1)));
+                    continue;
+                }
+                System.out.println("[shard " + shard + "] " + line);
+            }
+        } catch (IOException e) {
+            // The worker has stopped.
+        } finally {
+            listening.complete(null);
+        }
+    }
+}
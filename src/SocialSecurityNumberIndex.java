@@ -0,0 +1,136 @@
+import java.util.Arrays;
+
+public class SocialSecurityNumberIndex {
+
+    static final long NOT_A_SOCIAL_SECURITY_NUMBER = -1L;
+    private static final int SOCIAL_SECURITY_NUMBER_LENGTH = 10;
+
+    private final long[] keys;
+    private final int[] positions;
+    private final int[] paidEpochDays;
+    private final int mask;
+    private int size;
+
+    /**
+     * Creates an open-addressing index from packed social security numbers to list positions.
+     * Keys, positions and paid dates live in parallel primitive arrays so a lookup never
+     * allocates and the index costs a fixed 16 bytes per slot.
+     *
+     * @param expectedSize The number of customers that will be added.
+     */
+    public SocialSecurityNumberIndex(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 1) * 2 - 1) << 1;
+        keys = new long[capacity];
+        positions = new int[capacity];
+        paidEpochDays = new int[capacity];
+        mask = capacity - 1;
+        Arrays.fill(keys, NOT_A_SOCIAL_SECURITY_NUMBER);
+    }
+
+    /**
+     * Packs a 10 digit social security number into a long without allocating.
+     *
+     * @param socialSecurityNumber The social security number to pack.
+     * @return The number as a long, or NOT_A_SOCIAL_SECURITY_NUMBER if it is not exactly 10 digits.
+     */
+    public static long pack(CharSequence socialSecurityNumber) {
+        if (socialSecurityNumber.length() != SOCIAL_SECURITY_NUMBER_LENGTH) {
+            return NOT_A_SOCIAL_SECURITY_NUMBER;
+        }
+        long packed = 0;
+        for (int i = 0; i < SOCIAL_SECURITY_NUMBER_LENGTH; i++) {
+            char c = socialSecurityNumber.charAt(i);
+            if (c < '0' || c > '9') {
+                return NOT_A_SOCIAL_SECURITY_NUMBER;
+            }
+            packed = packed * 10 + (c - '0');
+        }
+        return packed;
+    }
+
+    /**
+     * Formats a packed social security number back to its 10 digit string form.
+     *
+     * @param packed The packed social security number.
+     * @return The social security number, including any leading zeros.
+     */
+    public static String unpack(long packed) {
+        char[] digits = new char[SOCIAL_SECURITY_NUMBER_LENGTH];
+        for (int i = SOCIAL_SECURITY_NUMBER_LENGTH - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + packed % 10);
+            packed /= 10;
+        }
+        return new String(digits);
+    }
+
+    /**
+     * Adds a customer to the index. If the social security number is already present the
+     * first entry is kept, so lookups return the same customer as a scan in file order.
+     *
+     * @param socialSecurityNumber The packed social security number.
+     * @param position The position of the customer in the customer list.
+     * @param paidEpochDay The day the membership was paid, as LocalDate.toEpochDay().
+     * @return True if the customer was added; false if the SSN was already indexed.
+     */
+    public boolean add(long socialSecurityNumber, int position, int paidEpochDay) {
+        if (size >= keys.length / 2) {
+            throw new IllegalStateException("Social security number index is full");
+        }
+        int slot = slotFor(socialSecurityNumber);
+        if (keys[slot] == socialSecurityNumber) {
+            return false;
+        }
+        keys[slot] = socialSecurityNumber;
+        positions[slot] = position;
+        paidEpochDays[slot] = paidEpochDay;
+        size++;
+        return true;
+    }
+
+    /**
+     * Finds the customer list position for a packed social security number.
+     *
+     * @param socialSecurityNumber The packed social security number.
+     * @return The position, or -1 if the number is not indexed.
+     */
+    public int findPosition(long socialSecurityNumber) {
+        if (socialSecurityNumber == NOT_A_SOCIAL_SECURITY_NUMBER) {
+            return -1;
+        }
+        int slot = slotFor(socialSecurityNumber);
+        return keys[slot] == socialSecurityNumber ? positions[slot] : -1;
+    }
+
+    /**
+     * Finds the membership paid date for a packed social security number.
+     *
+     * @param socialSecurityNumber The packed social security number.
+     * @return The paid date as an epoch day, or Integer.MIN_VALUE if the number is not indexed.
+     */
+    public int findPaidEpochDay(long socialSecurityNumber) {
+        if (socialSecurityNumber == NOT_A_SOCIAL_SECURITY_NUMBER) {
+            return Integer.MIN_VALUE;
+        }
+        int slot = slotFor(socialSecurityNumber);
+        return keys[slot] == socialSecurityNumber ? paidEpochDays[slot] : Integer.MIN_VALUE;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int slotFor(long socialSecurityNumber) {
+        int slot = (int) mix(socialSecurityNumber) & mask;
+        while (keys[slot] != NOT_A_SOCIAL_SECURITY_NUMBER && keys[slot] != socialSecurityNumber) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return key;
+    }
+}
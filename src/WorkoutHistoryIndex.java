@@ -0,0 +1,434 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Answers questions about the workout sheet, like the visits of one member or the attendance per day,
+ * without scanning the sheet for every question.
+ * <p>
+ * The sheet is read once and the visit days are kept per social security number and counted per day.
+ * The index is saved to a sidecar file together with how much of the sheet it covers, so on the next start
+ * and on every refresh only the entries appended since then are read. If the sheet was edited in any other
+ * way, it is read again from the start. Entries with a date that cannot be parsed are skipped and counted.
+ */
+public class WorkoutHistoryIndex implements Closeable {
+
+    private static final int MAGIC = 0x47594D57;
+    private static final int VERSION = 1;
+    private static final int TAIL_LENGTH = 256;
+    private static final int DATE_LENGTH = 10;
+    private static final int SAVE_INTERVAL = 10_000;
+    private static final String HEADER = "Workout sheet:";
+
+    private final Path sheetPath;
+    private final Path indexPath;
+    private final HashMap<String, Visits> visitsBySocialSecurityNumber = new HashMap<>();
+    private final TreeMap<Integer, Integer> attendanceByDay = new TreeMap<>();
+    private long indexedLength;
+    private byte[] indexedTail = new byte[0];
+    private int entries;
+    private int skippedEntries;
+    private int unsavedEntries;
+
+    /**
+     * Opens the index of a workout sheet, reading the sidecar file if it is intact and bringing it up
+     * to date with the sheet.
+     *
+     * @param sheetPath The workout sheet.
+     * @param indexPath The sidecar file the index is saved in.
+     * @throws IOException If the workout sheet cannot be read.
+     */
+    public WorkoutHistoryIndex(Path sheetPath, Path indexPath) throws IOException {
+        this.sheetPath = sheetPath;
+        this.indexPath = indexPath;
+        if (!load()) {
+            clear();
+        }
+        unsavedEntries = refreshEntries();
+        if (unsavedEntries > 0) {
+            save();
+        }
+    }
+
+    /**
+     * Reads the entries appended to the workout sheet since the last refresh.
+     *
+     * @return True if the index changed; false otherwise.
+     * @throws IOException If the workout sheet cannot be read.
+     */
+    public synchronized boolean refresh() throws IOException {
+        int added = refreshEntries();
+        unsavedEntries += added;
+        if (unsavedEntries >= SAVE_INTERVAL) {
+            save();
+        }
+        return added > 0;
+    }
+
+    /**
+     * Finds the days a member worked out.
+     *
+     * @param socialSecurityNumber The social security number of the member.
+     * @param from The first date to include.
+     * @param to The last date to include.
+     * @return The dates of the visits in date order, one per visit.
+     */
+    public synchronized List<LocalDate> findVisits(String socialSecurityNumber, LocalDate from, LocalDate to) {
+        Visits visits = visitsBySocialSecurityNumber.get(socialSecurityNumber);
+        ArrayList<LocalDate> dates = new ArrayList<>();
+        if (visits != null) {
+            for (int i = visits.firstOnOrAfter(from.toEpochDay()); i < visits.firstOnOrAfter(to.toEpochDay() + 1); i++) {
+                dates.add(LocalDate.ofEpochDay(visits.days[i]));
+            }
+        }
+        return dates;
+    }
+
+    /**
+     * Counts the visits of a member.
+     *
+     * @param socialSecurityNumber The social security number of the member.
+     * @param from The first date to include.
+     * @param to The last date to include.
+     * @return The number of visits.
+     */
+    public synchronized int countVisits(String socialSecurityNumber, LocalDate from, LocalDate to) {
+        Visits visits = visitsBySocialSecurityNumber.get(socialSecurityNumber);
+        return visits == null ? 0
+                : visits.firstOnOrAfter(to.toEpochDay() + 1) - visits.firstOnOrAfter(from.toEpochDay());
+    }
+
+    /**
+     * Counts the workouts on one day.
+     *
+     * @param day The day.
+     * @return The number of workouts logged for that day.
+     */
+    public synchronized int countAttendance(LocalDate day) {
+        return attendanceByDay.getOrDefault((int) day.toEpochDay(), 0);
+    }
+
+    /**
+     * Counts the workouts per day.
+     *
+     * @param from The first date to include.
+     * @param to The last date to include.
+     * @return The number of workouts per day, for the days with at least one workout.
+     */
+    public synchronized SortedMap<LocalDate, Integer> findAttendance(LocalDate from, LocalDate to) {
+        TreeMap<LocalDate, Integer> attendance = new TreeMap<>();
+        for (Map.Entry<Integer, Integer> day
+                : attendanceByDay.subMap((int) from.toEpochDay(), true, (int) to.toEpochDay(), true).entrySet()) {
+            attendance.put(LocalDate.ofEpochDay(day.getKey()), day.getValue());
+        }
+        return attendance;
+    }
+
+    public synchronized int size() {
+        return entries;
+    }
+
+    public synchronized int getSkippedEntries() {
+        return skippedEntries;
+    }
+
+    /**
+     * Writes the index to the sidecar file. The file is written next to it and moved into place, so a reader
+     * never sees a half-written index.
+     *
+     * @throws IOException If the file could not be written.
+     */
+    public synchronized void save() throws IOException {
+        Path temporaryPath = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporaryPath)), crc))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(indexedLength);
+            out.writeInt(indexedTail.length);
+            out.write(indexedTail);
+            out.writeInt(entries);
+            out.writeInt(skippedEntries);
+            out.writeInt(visitsBySocialSecurityNumber.size());
+            for (Map.Entry<String, Visits> member : visitsBySocialSecurityNumber.entrySet()) {
+                out.writeUTF(member.getKey());
+                out.writeInt(member.getValue().size);
+                for (int i = 0; i < member.getValue().size; i++) {
+                    out.writeInt(member.getValue().days[i]);
+                }
+            }
+            out.flush();
+            out.writeLong(crc.getValue());
+        }
+        Files.move(temporaryPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        unsavedEntries = 0;
+    }
+
+    /**
+     * Saves the index if entries were added since it was last saved.
+     *
+     * @throws IOException If the file could not be written.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (unsavedEntries > 0) {
+            save();
+        }
+    }
+
+    /**
+     * Reads the sidecar file.
+     *
+     * @return True if the file was intact and has been read; false otherwise.
+     */
+    private boolean load() {
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(indexPath)), crc))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return false;
+            }
+            indexedLength = in.readLong();
+            indexedTail = in.readNBytes(in.readInt());
+            entries = in.readInt();
+            skippedEntries = in.readInt();
+            int members = in.readInt();
+            for (int i = 0; i < members; i++) {
+                String socialSecurityNumber = in.readUTF();
+                int count = in.readInt();
+                Visits visits = new Visits(count);
+                for (int j = 0; j < count; j++) {
+                    visits.add(in.readInt());
+                }
+                visitsBySocialSecurityNumber.put(socialSecurityNumber, visits);
+                for (int j = 0; j < visits.size; j++) {
+                    attendanceByDay.merge(visits.days[j], 1, Integer::sum);
+                }
+            }
+            long checksum = crc.getValue();
+            if (in.readLong() != checksum) {
+                System.out.println("Workout index '" + indexPath + "' is corrupt and will be rebuilt");
+                clear();
+                return false;
+            }
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Workout index '" + indexPath + "' could not be read and will be rebuilt");
+            clear();
+            return false;
+        }
+    }
+
+    private void clear() {
+        visitsBySocialSecurityNumber.clear();
+        attendanceByDay.clear();
+        indexedLength = 0;
+        indexedTail = new byte[0];
+        entries = 0;
+        skippedEntries = 0;
+    }
+
+    /**
+     * Reads the complete entries after the part of the sheet that is already indexed, or the whole sheet
+     * if the indexed part has changed.
+     *
+     * @return The number of entries read, including skipped ones.
+     */
+    private int refreshEntries() throws IOException {
+        if (!Files.exists(sheetPath)) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(sheetPath, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < indexedLength || !Arrays.equals(readBytes(channel,
+                    indexedLength - indexedTail.length, indexedLength), indexedTail)) {
+                System.out.println("Workout sheet '" + sheetPath + "' has changed and will be indexed again");
+                clear();
+            }
+            if (length == indexedLength) {
+                return 0;
+            }
+            int before = entries + skippedEntries;
+            indexFrom(channel, length);
+            indexedTail = readBytes(channel, Math.max(indexedLength - TAIL_LENGTH, 0), indexedLength);
+            return entries + skippedEntries - before;
+        }
+    }
+
+    /**
+     * Streams the sheet from the indexed length up to a length, one line at a time. The indexed length
+     * only moves past whole entries; an entry that is still being written is read on the next refresh.
+     */
+    private void indexFrom(FileChannel channel, long length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        byte[] line = new byte[128];
+        int lineLength = 0;
+        String socialSecurityNumber = null;
+        long position = indexedLength;
+
+        while (position < length) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = buffer.get(i);
+                if (b != '\n') {
+                    if (lineLength == line.length) {
+                        line = Arrays.copyOf(line, line.length * 2);
+                    }
+                    line[lineLength++] = b;
+                    continue;
+                }
+                socialSecurityNumber = indexLine(line, lineLength, socialSecurityNumber, position + i + 1);
+                lineLength = 0;
+            }
+            position += read;
+        }
+        if (socialSecurityNumber != null && lineLength >= DATE_LENGTH) {
+            indexLine(line, lineLength, socialSecurityNumber, length);
+        }
+    }
+
+    /**
+     * Handles one line of the sheet: the header, the "SSN, name" line of an entry or its date line.
+     *
+     * @return The social security number of an entry whose date line comes next, or null.
+     */
+    private String indexLine(byte[] line, int lineLength, String socialSecurityNumber, long lineEnd) {
+        String text = new String(line, 0, lineLength, StandardCharsets.UTF_8).trim();
+        if (socialSecurityNumber == null) {
+            if (text.isEmpty() || text.equals(HEADER)) {
+                indexedLength = lineEnd;
+                return null;
+            }
+            int comma = text.indexOf(',');
+            return (comma < 0 ? text : text.substring(0, comma)).trim();
+        }
+
+        int day = parseDay(text);
+        if (day == Integer.MIN_VALUE) {
+            skippedEntries++;
+        } else {
+            visitsBySocialSecurityNumber.computeIfAbsent(socialSecurityNumber, ssn -> new Visits(4)).add(day);
+            attendanceByDay.merge(day, 1, Integer::sum);
+            entries++;
+        }
+        indexedLength = lineEnd;
+        return null;
+    }
+
+    /**
+     * Parses a date in the format yyyy-MM-dd, resolving day 29 to 31 to the end of a shorter month like
+     * RegisterPerson.parseDateFromString does.
+     *
+     * @return The date as LocalDate.toEpochDay(), or Integer.MIN_VALUE if it is not a valid date.
+     */
+    static int parseDay(String date) {
+        if (date.length() != DATE_LENGTH || date.charAt(4) != '-' || date.charAt(7) != '-') {
+            return Integer.MIN_VALUE;
+        }
+        int year = digits(date, 0, 4);
+        int month = digits(date, 5, 7);
+        int day = digits(date, 8, 10);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31) {
+            return Integer.MIN_VALUE;
+        }
+        try {
+            LocalDate firstOfMonth = LocalDate.of(year, month, 1);
+            return (int) firstOfMonth.withDayOfMonth(Math.min(day, firstOfMonth.lengthOfMonth())).toEpochDay();
+        } catch (DateTimeException e) {
+            return Integer.MIN_VALUE;
+        }
+    }
+
+    private static int digits(String text, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static byte[] readBytes(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (to - Math.max(from, 0)));
+        long position = Math.max(from, 0);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * The visit days of one member, kept sorted.
+     */
+    private static class Visits {
+
+        private int[] days;
+        private int size;
+
+        Visits(int capacity) {
+            days = new int[Math.max(capacity, 1)];
+        }
+
+        void add(int day) {
+            if (size == days.length) {
+                days = Arrays.copyOf(days, size * 2);
+            }
+            int position = size;
+            while (position > 0 && days[position - 1] > day) {
+                position--;
+            }
+            System.arraycopy(days, position, days, position + 1, size - position);
+            days[position] = day;
+            size++;
+        }
+
+        int firstOnOrAfter(long epochDay) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (days[middle] < epochDay) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
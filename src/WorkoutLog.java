@@ -0,0 +1,141 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Lets many threads log workouts while a single writer thread owns the workout sheet.
+ * Entries waiting in the queue are appended together; when they reach the file or the disk is left to the
+ * durability policy of the workout sheet or store, and closing the log writes and forces them.
+ */
+public class WorkoutLog implements Closeable {
+
+    private static final Entry END_OF_LOG = new Entry(null, null);
+
+    private final WorkoutSink writer;
+    private final CheckInMetrics metrics = CheckInMetrics.global();
+    private final LinkedBlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+    private volatile boolean closed;
+
+    /**
+     * Starts the writer thread for a workout sheet or store.
+     *
+     * @param writer The workout sheet or store to write to. It is closed when the log is closed.
+     */
+    public WorkoutLog(WorkoutSink writer) {
+        this.writer = writer;
+        writerThread = new Thread(this::writeEntries, "workout-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Queues a workout entry dated today for a paying customer.
+     *
+     * @param person The paying customer for whom the workout entry is created.
+     * @return A future that completes when the entry has been appended to the workout sheet, or fails if the
+     * log is closed or the entry could not be appended.
+     */
+    public CompletableFuture<Void> append(Person person) {
+        Entry entry = new Entry(person, LocalDate.now());
+        synchronized (queue) {
+            if (!closed) {
+                queue.add(entry);
+                return entry.written;
+            }
+        }
+        entry.written.completeExceptionally(new IOException("Workout log is closed"));
+        return entry.written;
+    }
+
+    public int getPendingEntries() {
+        return queue.size();
+    }
+
+    /**
+     * Writes every queued entry, stops the writer thread and closes the workout sheet.
+     *
+     * @throws IOException If the workout sheet could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (queue) {
+            if (closed) {
+                return;
+            }
+            // Under the same lock as append, so no entry can be queued behind the end of the log.
+            closed = true;
+            queue.add(END_OF_LOG);
+        }
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer.close();
+    }
+
+    private void writeEntries() {
+        ArrayList<Entry> batch = new ArrayList<>();
+        boolean running = true;
+
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch);
+
+            IOException failure = null;
+            for (Entry entry : batch) {
+                if (entry == END_OF_LOG) {
+                    running = false;
+                } else if (failure == null) {
+                    try {
+                        writer.append(entry.person, entry.date);
+                    } catch (IOException e) {
+                        failure = e;
+                    }
+                }
+            }
+            if (failure != null) {
+                failure.printStackTrace();
+                System.out.println("Error while handling file: " + writer.getPath());
+            }
+
+            for (Entry entry : batch) {
+                if (failure == null) {
+                    if (entry != END_OF_LOG) {
+                        metrics.workoutQueue.recordSince(entry.queuedNanos);
+                    }
+                    entry.written.complete(null);
+                } else {
+                    entry.written.completeExceptionally(failure);
+                }
+            }
+            batch.clear();
+        }
+
+        IOException closedFailure = new IOException("Workout log is closed");
+        for (Entry entry = queue.poll(); entry != null; entry = queue.poll()) {
+            entry.written.completeExceptionally(closedFailure);
+        }
+    }
+
+    private static class Entry {
+
+        private final Person person;
+        private final LocalDate date;
+        private final CompletableFuture<Void> written = new CompletableFuture<>();
+        private final long queuedNanos = System.nanoTime();
+
+        Entry(Person person, LocalDate date) {
+            this.person = person;
+            this.date = date;
+        }
+    }
+}
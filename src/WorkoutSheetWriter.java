@@ -0,0 +1,193 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends workout entries to the workout sheet through a file that stays open, in exactly the same format
+ * as RegisterPerson.addWorkoutInFileForPayingCustomers.
+ */
+public class WorkoutSheetWriter implements WorkoutSink {
+
+    /**
+     * How soon an appended entry must reach the file.
+     */
+    public enum Durability {
+        /** Every entry is written to the file before append returns. */
+        FLUSH_PER_RECORD,
+        /** Entries are collected and written together when the batch is full or the delay has passed. */
+        GROUP_COMMIT,
+        /** Like GROUP_COMMIT, but every timed flush is also forced to the disk with fsync. */
+        FSYNC_INTERVAL
+    }
+
+    private static final String HEADER = "Workout sheet:";
+
+    private final Path path;
+    private final FileChannel channel;
+    private final Durability durability;
+    private final int maxBatchSize;
+    private final StringBuilder batch = new StringBuilder();
+    private final ScheduledExecutorService flusher;
+    private int batchedRecords;
+    private boolean closed;
+
+    /**
+     * Opens a workout sheet that flushes every record.
+     *
+     * @param path The path to the workout sheet file.
+     * @throws IOException If the file cannot be opened.
+     */
+    public WorkoutSheetWriter(Path path) throws IOException {
+        this(path, Durability.FLUSH_PER_RECORD, 1, 0);
+    }
+
+    /**
+     * Opens a workout sheet for appending, creating it with its header line if it does not exist.
+     *
+     * @param path The path to the workout sheet file.
+     * @param durability How soon appended entries must reach the file.
+     * @param maxBatchSize The number of entries that triggers a write when batching.
+     * @param maxDelayMillis The longest time a batched entry may wait before it is written.
+     * @throws IOException If the file cannot be opened.
+     */
+    public WorkoutSheetWriter(Path path, Durability durability, int maxBatchSize, long maxDelayMillis)
+            throws IOException {
+        this.path = path;
+        this.durability = durability;
+        this.maxBatchSize = Math.max(maxBatchSize, 1);
+
+        boolean newFile = !Files.exists(path);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        if (newFile) {
+            write(HEADER);
+        }
+
+        if (durability != Durability.FLUSH_PER_RECORD && maxDelayMillis > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "workout-sheet-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flushOnTimer, maxDelayMillis, maxDelayMillis,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * Appends a workout entry for a paying customer.
+     *
+     * @param person The paying customer for whom the workout entry is created.
+     * @param date The date of the workout.
+     * @throws IOException If the entry could not be written.
+     */
+    @Override
+    public synchronized void append(Person person, LocalDate date) throws IOException {
+        if (closed) {
+            throw new IOException("Workout sheet '" + path + "' is closed");
+        }
+        batch.append('\n').append(person.getSocialSecurityNumber()).append(", ").append(person.getName())
+                .append('\n');
+        appendDate(date);
+        batchedRecords++;
+
+        if (durability == Durability.FLUSH_PER_RECORD || batchedRecords >= maxBatchSize) {
+            writeBatch();
+        }
+    }
+
+    /**
+     * Writes all batched entries to the file.
+     *
+     * @throws IOException If the entries could not be written.
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        writeBatch();
+    }
+
+    /**
+     * Writes all batched entries, forces them to the disk and closes the file.
+     *
+     * @throws IOException If the entries could not be written.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        try {
+            writeBatch();
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Override
+    public Path getPath() {
+        return path;
+    }
+
+    private synchronized void flushOnTimer() {
+        if (closed) {
+            return;
+        }
+        try {
+            writeBatch();
+            if (durability == Durability.FSYNC_INTERVAL) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println("Error while handling file: " + path);
+        }
+    }
+
+    private void writeBatch() throws IOException {
+        if (batch.length() == 0) {
+            return;
+        }
+        write(batch.toString());
+        batch.setLength(0);
+        batchedRecords = 0;
+    }
+
+    private void write(String text) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    private void appendDate(LocalDate date) {
+        int year = date.getYear();
+        if (year < 1000 || year > 9999) {
+            batch.append(date.format(RegisterPerson.DATE_FORMATTER));
+            return;
+        }
+        batch.append(year).append('-');
+        if (date.getMonthValue() < 10) {
+            batch.append('0');
+        }
+        batch.append(date.getMonthValue()).append('-');
+        if (date.getDayOfMonth() < 10) {
+            batch.append('0');
+        }
+        batch.append(date.getDayOfMonth());
+    }
+}
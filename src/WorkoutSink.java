@@ -0,0 +1,41 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+/**
+ * Somewhere workout entries of paying customers are kept: the workout sheet file or the gym store.
+ */
+public interface WorkoutSink extends Closeable {
+
+    /**
+     * Appends a workout entry for a paying customer.
+     *
+     * @param person The paying customer for whom the workout entry is created.
+     * @param date The date of the workout.
+     * @throws IOException If the entry could not be written.
+     */
+    void append(Person person, LocalDate date) throws IOException;
+
+    /**
+     * Appends a workout entry for a paying customer dated today.
+     *
+     * @param person The paying customer for whom the workout entry is created.
+     * @throws IOException If the entry could not be written.
+     */
+    default void append(Person person) throws IOException {
+        append(person, LocalDate.now());
+    }
+
+    /**
+     * Makes every appended entry durable.
+     *
+     * @throws IOException If the entries could not be written.
+     */
+    void flush() throws IOException;
+
+    /**
+     * @return The file or directory the entries are written to, for error messages.
+     */
+    Path getPath();
+}